@@ -0,0 +1,316 @@
+package org.liveontologies.protege.explanation.proof;
+
+/*-
+ * #%L
+ * Protege Proof-Based Explanation
+ * $Id:$
+ * $HeadURL:$
+ * %%
+ * Copyright (C) 2014 - 2016 Live Ontologies Project
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLOntology;
+
+/**
+ * Keeps track of the occurrences of axioms in ontologies indexed by the
+ * axioms without annotations. The keys are stored in an open-addressing hash
+ * table and the occurrences, i.e., the pairs of the original axiom and the
+ * index of its ontology, in arrays linked into a list for every key. This
+ * takes considerably less memory than a pair of multimaps with boxed
+ * entries.
+ * <p>
+ * The occurrences are only added: the index is filled once and replaced as a
+ * whole when the ontologies change. The object is not thread-safe, but it can
+ * be read by several threads at the same time once it is not modified
+ * anymore.
+ */
+class AxiomOccurrenceIndex {
+
+	private static final int NONE_ = -1;
+
+	private static final int INITIAL_CAPACITY_ = 16;
+
+	/**
+	 * the different ontologies in which the axioms occur; the occurrences
+	 * refer to their positions
+	 */
+	private final List<OWLOntology> ontologies_ = new ArrayList<OWLOntology>();
+
+	private final Map<OWLOntology, Integer> ontologyIndex_ = new HashMap<OWLOntology, Integer>();
+
+	/**
+	 * the axioms without annotations; the hash table uses linear probing
+	 */
+	private OWLAxiom[] keys_ = new OWLAxiom[INITIAL_CAPACITY_];
+
+	/**
+	 * the first occurrence for every key in {@link #keys_}
+	 */
+	private int[] firstOccurrence_ = new int[INITIAL_CAPACITY_];
+
+	/**
+	 * the number of keys in {@link #keys_}
+	 */
+	private int keyCount_ = 0;
+
+	/**
+	 * the original axiom of every occurrence
+	 */
+	private OWLAxiom[] axioms_ = new OWLAxiom[INITIAL_CAPACITY_];
+
+	/**
+	 * the index of the ontology of every occurrence
+	 */
+	private int[] ontologyOf_ = new int[INITIAL_CAPACITY_];
+
+	/**
+	 * the next occurrence with the same key
+	 */
+	private int[] nextOccurrence_ = new int[INITIAL_CAPACITY_];
+
+	/**
+	 * the number of recorded occurrences
+	 */
+	private int occurrenceCount_ = 0;
+
+	private final Set<OWLAxiom> keySet_ = new KeySet();
+
+	/**
+	 * Records an occurrence of the given axiom in the given ontology
+	 * 
+	 * @param axiom
+	 * @param key
+	 *            the result of {@link OWLAxiom#getAxiomWithoutAnnotations()}
+	 *            for the axiom
+	 * @param ontology
+	 * @return {@code true} if no axiom equal to the given one modulo
+	 *         annotations occurred before
+	 */
+	boolean add(OWLAxiom axiom, OWLAxiom key, OWLOntology ontology) {
+		int occurrence = newOccurrence(axiom, getOntologyIndex(ontology));
+		int pos = find(key);
+		if (keys_[pos] == null) {
+			keys_[pos] = key;
+			firstOccurrence_[pos] = occurrence;
+			if (++keyCount_ * 3 > keys_.length * 2) {
+				resize(keys_.length * 2);
+			}
+			return true;
+		}
+		// else append to keep the order of occurrences
+		int last = firstOccurrence_[pos];
+		while (nextOccurrence_[last] != NONE_) {
+			last = nextOccurrence_[last];
+		}
+		nextOccurrence_[last] = occurrence;
+		return false;
+	}
+
+	/**
+	 * @param key
+	 *            an axiom without annotations
+	 * @return {@code true} if some axiom equal to the given one modulo
+	 *         annotations occurs
+	 */
+	boolean containsKey(Object key) {
+		return keys_[find(key)] != null;
+	}
+
+	/**
+	 * @param key
+	 *            an axiom without annotations
+	 * @return the axioms equal to the given one modulo annotations in the
+	 *         order in which they were added; the ontologies in which they
+	 *         occur are in the corresponding positions of
+	 *         {@link #getOntologies(OWLAxiom)}
+	 */
+	List<OWLAxiom> getAxioms(OWLAxiom key) {
+		int pos = find(key);
+		if (keys_[pos] == null) {
+			return Collections.emptyList();
+		}
+		// else
+		List<OWLAxiom> result = new ArrayList<OWLAxiom>(2);
+		for (int occurrence = firstOccurrence_[pos]; occurrence != NONE_; occurrence = nextOccurrence_[occurrence]) {
+			result.add(axioms_[occurrence]);
+		}
+		return Collections.unmodifiableList(result);
+	}
+
+	/**
+	 * @param key
+	 *            an axiom without annotations
+	 * @return the ontologies in which the axioms equal to the given one
+	 *         modulo annotations occur
+	 * 
+	 * @see #getAxioms(OWLAxiom)
+	 */
+	List<OWLOntology> getOntologies(OWLAxiom key) {
+		int pos = find(key);
+		if (keys_[pos] == null) {
+			return Collections.emptyList();
+		}
+		// else
+		List<OWLOntology> result = new ArrayList<OWLOntology>(2);
+		for (int occurrence = firstOccurrence_[pos]; occurrence != NONE_; occurrence = nextOccurrence_[occurrence]) {
+			result.add(ontologies_.get(ontologyOf_[occurrence]));
+		}
+		return Collections.unmodifiableList(result);
+	}
+
+	/**
+	 * @return the view of the axioms without annotations for which some
+	 *         occurrences are recorded; the view cannot be modified
+	 */
+	Set<OWLAxiom> keySet() {
+		return keySet_;
+	}
+
+	private int getOntologyIndex(OWLOntology ontology) {
+		Integer result = ontologyIndex_.get(ontology);
+		if (result == null) {
+			result = ontologies_.size();
+			ontologies_.add(ontology);
+			ontologyIndex_.put(ontology, result);
+		}
+		return result;
+	}
+
+	private int newOccurrence(OWLAxiom axiom, int ontology) {
+		int result = occurrenceCount_++;
+		if (result == axioms_.length) {
+			int capacity = axioms_.length * 2;
+			axioms_ = Arrays.copyOf(axioms_, capacity);
+			ontologyOf_ = Arrays.copyOf(ontologyOf_, capacity);
+			nextOccurrence_ = Arrays.copyOf(nextOccurrence_, capacity);
+		}
+		axioms_[result] = axiom;
+		ontologyOf_[result] = ontology;
+		nextOccurrence_[result] = NONE_;
+		return result;
+	}
+
+	private static int hash(Object key) {
+		int h = key.hashCode();
+		// spread the bits since the table size is a power of two
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * @param key
+	 * @return the position of the given key in {@link #keys_} or the
+	 *         position of the empty slot where it should be inserted
+	 */
+	private int find(Object key) {
+		return find(keys_, key);
+	}
+
+	private static int find(OWLAxiom[] keys, Object key) {
+		int mask = keys.length - 1;
+		int pos = hash(key) & mask;
+		for (;;) {
+			OWLAxiom next = keys[pos];
+			if (next == null || next.equals(key)) {
+				return pos;
+			}
+			// else
+			pos = (pos + 1) & mask;
+		}
+	}
+
+	private void resize(int capacity) {
+		OWLAxiom[] oldKeys = keys_;
+		int[] oldFirstOccurrence = firstOccurrence_;
+		keys_ = new OWLAxiom[capacity];
+		firstOccurrence_ = new int[capacity];
+		for (int i = 0; i < oldKeys.length; i++) {
+			OWLAxiom key = oldKeys[i];
+			if (key == null) {
+				continue;
+			}
+			// else
+			int pos = find(key);
+			keys_[pos] = key;
+			firstOccurrence_[pos] = oldFirstOccurrence[i];
+		}
+	}
+
+	private class KeySet extends AbstractSet<OWLAxiom> {
+
+		@Override
+		public boolean contains(Object o) {
+			return o != null && containsKey(o);
+		}
+
+		@Override
+		public int size() {
+			return keyCount_;
+		}
+
+		@Override
+		public Iterator<OWLAxiom> iterator() {
+			return new Iterator<OWLAxiom>() {
+
+				private final OWLAxiom[] table_ = keys_;
+
+				private int next_ = advance(0);
+
+				private int advance(int pos) {
+					while (pos < table_.length && table_[pos] == null) {
+						pos++;
+					}
+					return pos;
+				}
+
+				@Override
+				public boolean hasNext() {
+					return next_ < table_.length;
+				}
+
+				@Override
+				public OWLAxiom next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					// else
+					OWLAxiom result = table_[next_];
+					next_ = advance(next_ + 1);
+					return result;
+				}
+
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+
+			};
+		}
+
+	}
+
+}
@@ -0,0 +1,180 @@
+package org.liveontologies.protege.explanation.proof;
+
+/*-
+ * #%L
+ * Protege Proof-Based Explanation
+ * $Id:$
+ * $HeadURL:$
+ * %%
+ * Copyright (C) 2014 - 2016 Live Ontologies Project
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+
+import org.liveontologies.puli.DelegatingProof;
+import org.liveontologies.puli.Inference;
+import org.liveontologies.puli.Producer;
+import org.liveontologies.puli.Proof;
+import org.liveontologies.puli.Proofs;
+import org.liveontologies.puli.pinpointing.InterruptMonitor;
+
+/**
+ * A collection of static methods for processing {@link Proof}s that can be
+ * stopped when the result is not needed anymore. The computations regularly
+ * check the provided {@link InterruptMonitor} and throw
+ * {@link CancellationException} as soon as it reports interruption.
+ * 
+ * @see Proofs
+ */
+public class CancellableProofs {
+
+	/**
+	 * @param monitor
+	 * @throws CancellationException
+	 *             if the given {@link InterruptMonitor} reports interruption
+	 */
+	public static void checkCancelled(InterruptMonitor monitor)
+			throws CancellationException {
+		if (monitor.isInterrupted()) {
+			throw new CancellationException();
+		}
+	}
+
+	/**
+	 * @param proof
+	 * @param monitor
+	 * @return the {@link Proof} that has the same inferences as the given
+	 *         {@link Proof} but whose method {@link Proof#getInferences(Object)}
+	 *         throws {@link CancellationException} if the given
+	 *         {@link InterruptMonitor} reports interruption
+	 */
+	public static <I extends Inference<?>> Proof<I> cancellable(
+			Proof<? extends I> proof, InterruptMonitor monitor) {
+		return new CancellableProof<I>(proof, monitor);
+	}
+
+	/**
+	 * The same as {@link Proofs#getEssentialConclusions(Proof, Object)} but
+	 * checks for cancellation before testing every candidate conclusion. The
+	 * derivability of the goal is checked from scratch for every candidate;
+	 * the incremental checks used in
+	 * {@link Proofs#getEssentialConclusions(Proof, Object)} may use a blocked
+	 * candidate after it is derived again by other inferences and miss some
+	 * essential conclusions.
+	 * 
+	 * @param proof
+	 * @param goal
+	 * @param monitor
+	 * @return the set of conclusions without which the goal would not be
+	 *         derivable using the given inferences
+	 * @throws CancellationException
+	 *             if the given {@link InterruptMonitor} reports interruption
+	 */
+	public static <C, I extends Inference<? extends C>> Set<C> getEssentialConclusions(
+			Proof<? extends I> proof, C goal, InterruptMonitor monitor)
+			throws CancellationException {
+		InferenceGraph<C> graph = new InferenceGraph<C>(proof, goal, monitor);
+		InferenceGraph<C>.DerivabilityChecker checker = graph.getChecker();
+		boolean[] essential = new boolean[graph.getConclusionCount()];
+		for (int candidate = 0; candidate < essential.length; candidate++) {
+			checkCancelled(monitor);
+			essential[candidate] = !checker.isGoalDerivable(candidate);
+		}
+		return graph.getConclusions(essential);
+	}
+
+	/**
+	 * The same as {@link Proofs#prune(Proof, Object)} but checks for
+	 * cancellation while computing the result
+	 * 
+	 * @param proof
+	 * @param goal
+	 * @param monitor
+	 * @return a proof obtained from the given proofs by removing some
+	 *         inferences that do not have effect on the derivation relation
+	 *         between the asserted conclusions in the proof and the goal
+	 *         conclusion
+	 * @throws CancellationException
+	 *             if the given {@link InterruptMonitor} reports interruption
+	 */
+	public static <I extends Inference<?>> Proof<I> prune(
+			Proof<? extends I> proof, Object goal, InterruptMonitor monitor)
+			throws CancellationException {
+		Proof<I> cancellable = cancellable(proof, monitor);
+		return new PrunedProof<I>(cancellable,
+				getEssentialConclusions(cancellable, goal, monitor), goal);
+	}
+
+	private static class CancellableProof<I extends Inference<?>>
+			extends DelegatingProof<I, Proof<? extends I>> {
+
+		private final InterruptMonitor monitor_;
+
+		CancellableProof(Proof<? extends I> delegate,
+				InterruptMonitor monitor) {
+			super(delegate);
+			this.monitor_ = monitor;
+		}
+
+		@Override
+		public Collection<? extends I> getInferences(Object conclusion) {
+			checkCancelled(monitor_);
+			return super.getInferences(conclusion);
+		}
+
+	}
+
+	/**
+	 * A {@link Proof} that for each conclusion derivable from the essential
+	 * conclusions by non-asserted inferences retains only the first inference
+	 * used to derive it
+	 */
+	static class PrunedProof<I extends Inference<?>>
+			extends DelegatingProof<I, Proof<? extends I>>
+			implements Producer<I> {
+
+		private final Map<Object, I> expanded_ = new HashMap<Object, I>();
+
+		PrunedProof(Proof<? extends I> delegate, Set<Object> essential,
+				Object goal) {
+			super(delegate);
+			Proofs.expand(essential, Proofs.removeAssertedInferences(delegate),
+					goal, this);
+		}
+
+		@Override
+		public void produce(I inf) {
+			expanded_.put(inf.getConclusion(), inf);
+		}
+
+		@Override
+		public Collection<? extends I> getInferences(Object conclusion) {
+			I inf = expanded_.get(conclusion);
+			if (inf == null) {
+				return super.getInferences(conclusion);
+			}
+			// else
+			return Collections.singleton(inf);
+		}
+
+	}
+
+}
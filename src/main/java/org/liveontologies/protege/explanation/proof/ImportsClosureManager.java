@@ -22,12 +22,22 @@ package org.liveontologies.protege.explanation.proof;
  * #L%
  */
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import org.liveontologies.protege.explanation.proof.preferences.ProofBasedExplPrefs;
 import org.protege.editor.core.Disposable;
 import org.protege.editor.owl.OWLEditorKit;
+import org.protege.editor.owl.model.OWLModelManager;
+import org.protege.editor.owl.model.event.EventType;
+import org.protege.editor.owl.model.event.OWLModelManagerChangeEvent;
+import org.protege.editor.owl.model.event.OWLModelManagerListener;
 import org.semanticweb.owlapi.model.OWLException;
 import org.semanticweb.owlapi.model.OWLOntology;
 import org.semanticweb.owlapi.model.OWLOntologyChange;
@@ -35,7 +45,15 @@ import org.semanticweb.owlapi.model.OWLOntologyChangeListener;
 import org.semanticweb.owlapi.model.OWLOntologyManager;
 
 /**
- * Keeps track of the import closures for relevant ontologies
+ * Keeps track of the import closures for relevant ontologies. The records
+ * are reference-counted: a record that is not used anymore is retained for
+ * reuse only while the number of such records does not exceed
+ * {@link ProofBasedExplPrefs#retainedImportsClosures} and its ontology is
+ * still managed by the {@link OWLOntologyManager}. Since ontologies can be
+ * removed without releasing any record, the unused records are also checked
+ * when the {@link OWLModelManager} reports that the loaded ontologies or the
+ * active ontology have changed. The entries of {@link ProofCache} for the
+ * discarded records are purged.
  * 
  * @author Yevgeny Kazakov
  *
@@ -45,13 +63,62 @@ public class ImportsClosureManager
 
 	private static final String KEY_ = "org.liveontologies.protege.explanation.proof.imports";
 
+	private final OWLModelManager modelManager_;
+
 	private final OWLOntologyManager ontologyManager_;
 
+	/**
+	 * the cache whose entries for the discarded records are purged
+	 */
+	private final ProofCache proofCache_;
+
 	private final Map<OWLOntology, ImportsClosureRecord> ontologyClosureManagers_ = new HashMap<OWLOntology, ImportsClosureRecord>();
 
-	private ImportsClosureManager(OWLOntologyManager ontologyManager) {
-		this.ontologyManager_ = ontologyManager;
-		ontologyManager.addOntologyChangeListener(this);
+	/**
+	 * the number of acquisitions of every record in
+	 * {@link #ontologyClosureManagers_} that are not yet released
+	 */
+	private final Map<ImportsClosureRecord, Integer> references_ = new IdentityHashMap<ImportsClosureRecord, Integer>();
+
+	/**
+	 * the records in {@link #ontologyClosureManagers_} without references in
+	 * the order in which they were released
+	 */
+	private final Map<OWLOntology, ImportsClosureRecord> unused_ = new LinkedHashMap<OWLOntology, ImportsClosureRecord>();
+
+	/**
+	 * for every ontology, the records whose imports closure contains this
+	 * ontology; only records whose axioms are up to date are indexed
+	 */
+	private final Map<OWLOntology, List<ImportsClosureRecord>> recordsByOntology_ = new HashMap<OWLOntology, List<ImportsClosureRecord>>();
+
+	/**
+	 * the imports closures of the records for which they were indexed in
+	 * {@link #recordsByOntology_}
+	 */
+	private final Map<ImportsClosureRecord, Set<? extends OWLOntology>> indexedClosures_ = new IdentityHashMap<ImportsClosureRecord, Set<? extends OWLOntology>>();
+
+	private final OWLModelManagerListener modelManagerListener_ = new OWLModelManagerListener() {
+		@Override
+		public void handleChange(OWLModelManagerChangeEvent event) {
+			// removing an ontology changes the active ontology
+			if (event.isType(EventType.ACTIVE_ONTOLOGY_CHANGED)
+					|| event.isType(EventType.ONTOLOGY_LOADED)
+					|| event.isType(EventType.ONTOLOGY_RELOADED)) {
+				synchronized (ImportsClosureManager.this) {
+					evictUnused();
+				}
+			}
+		}
+	};
+
+	private ImportsClosureManager(OWLModelManager modelManager,
+			ProofCache proofCache) {
+		this.modelManager_ = modelManager;
+		this.ontologyManager_ = modelManager.getOWLOntologyManager();
+		this.proofCache_ = proofCache;
+		ontologyManager_.addOntologyChangeListener(this);
+		modelManager.addListener(modelManagerListener_);
 	}
 
 	public static synchronized ImportsClosureManager get(OWLEditorKit editorKit)
@@ -59,42 +126,158 @@ public class ImportsClosureManager
 		// reuse one instance
 		ImportsClosureManager m = editorKit.getModelManager().get(KEY_);
 		if (m == null) {
-			m = new ImportsClosureManager(
-					editorKit.getModelManager().getOWLOntologyManager());
+			m = new ImportsClosureManager(editorKit.getModelManager(),
+					ProofCache.get(editorKit));
 			editorKit.put(KEY_, m);
 		}
 		return m;
 	}
 
-	synchronized ImportsClosureRecord getImportsClosure(OWLOntology ontology) {
+	/**
+	 * @param ontology
+	 * @return the record for the imports closure of the given ontology; it
+	 *         should be released using
+	 *         {@link #release(ImportsClosureRecord)} when not needed anymore
+	 */
+	synchronized ImportsClosureRecord acquire(OWLOntology ontology) {
 		ImportsClosureRecord result = ontologyClosureManagers_.get(ontology);
 		if (result == null) {
 			result = new ImportsClosureRecord(ontology);
 			ontologyClosureManagers_.put(ontology, result);
 		}
+		unused_.remove(ontology);
+		Integer count = references_.get(result);
+		references_.put(result, count == null ? 1 : count + 1);
 		return result;
 	}
 
+	/**
+	 * Releases the record obtained by {@link #acquire(OWLOntology)}; the
+	 * record is discarded if it is not used anymore and should not be
+	 * retained
+	 * 
+	 * @param record
+	 */
+	synchronized void release(ImportsClosureRecord record) {
+		Integer count = references_.get(record);
+		if (count == null) {
+			return;
+		}
+		// else
+		if (count > 1) {
+			references_.put(record, count - 1);
+			return;
+		}
+		// else
+		references_.remove(record);
+		unused_.put(record.getRootOntology(), record);
+		evictUnused();
+	}
+
+	/**
+	 * Discards the unused records that exceed the retention limit or whose
+	 * ontologies were removed from the {@link OWLOntologyManager} together
+	 * with the entries of {@link ProofCache} for them
+	 */
+	private void evictUnused() {
+		int excess = unused_.size()
+				- ProofBasedExplPrefs.create().load().retainedImportsClosures;
+		Iterator<ImportsClosureRecord> iter = unused_.values().iterator();
+		while (iter.hasNext()) {
+			ImportsClosureRecord record = iter.next();
+			if (excess > 0) {
+				excess--;
+			} else if (ontologyManager_.contains(record.getRootOntology())) {
+				continue;
+			}
+			// else
+			iter.remove();
+			ontologyClosureManagers_.remove(record.getRootOntology());
+			unindex(record);
+			record.invalidate();
+			proofCache_.purge(record);
+		}
+	}
+
 	@Override
 	public void dispose() {
 		ontologyManager_.removeOntologyChangeListener(this);
+		modelManager_.removeListener(modelManagerListener_);
 	}
 
 	@Override
-	public void ontologiesChanged(List<? extends OWLOntologyChange> changes)
-			throws OWLException {
+	public synchronized void ontologiesChanged(
+			List<? extends OWLOntologyChange> changes) throws OWLException {
+		updateIndex();
+		// the changes relevant for each record, in the original order
+		Map<ImportsClosureRecord, List<OWLOntologyChange>> routed = new LinkedHashMap<ImportsClosureRecord, List<OWLOntologyChange>>();
+		for (OWLOntologyChange change : changes) {
+			List<ImportsClosureRecord> records = recordsByOntology_
+					.get(change.getOntology());
+			if (records == null) {
+				continue;
+			}
+			// else
+			for (ImportsClosureRecord record : records) {
+				List<OWLOntologyChange> recordChanges = routed.get(record);
+				if (recordChanges == null) {
+					recordChanges = new ArrayList<OWLOntologyChange>();
+					routed.put(record, recordChanges);
+				}
+				recordChanges.add(change);
+			}
+		}
+		for (Map.Entry<ImportsClosureRecord, List<OWLOntologyChange>> entry : routed
+				.entrySet()) {
+			entry.getKey().applyChanges(entry.getValue());
+		}
+	}
+
+	/**
+	 * Removes the given record from {@link #recordsByOntology_}
+	 * 
+	 * @param record
+	 */
+	private void unindex(ImportsClosureRecord record) {
+		Set<? extends OWLOntology> indexed = indexedClosures_.remove(record);
+		if (indexed == null) {
+			return;
+		}
+		// else
+		for (OWLOntology ontology : indexed) {
+			List<ImportsClosureRecord> records = recordsByOntology_
+					.get(ontology);
+			records.remove(record);
+			if (records.isEmpty()) {
+				recordsByOntology_.remove(ontology);
+			}
+		}
+	}
+
+	/**
+	 * Updates {@link #recordsByOntology_} for the records whose imports
+	 * closures were computed or discarded since the last update
+	 */
+	private void updateIndex() {
 		for (ImportsClosureRecord record : ontologyClosureManagers_.values()) {
-			if (!record.isUpToDate()) {
+			Set<? extends OWLOntology> closure = record.getImportsClosure();
+			Set<? extends OWLOntology> indexed = indexedClosures_.get(record);
+			if (closure == indexed) {
 				continue;
 			}
-			for (OWLOntologyChange change : changes) {
-				OWLOntology changedOntology = change.getOntology();
-				// else
-				if (record.getImportsClosure().contains(changedOntology)) {
-					// TODO: optimize by applying changes directly
-					record.invalidateLater();
-					return;
+			// else
+			unindex(record);
+			if (closure != null) {
+				for (OWLOntology ontology : closure) {
+					List<ImportsClosureRecord> records = recordsByOntology_
+							.get(ontology);
+					if (records == null) {
+						records = new ArrayList<ImportsClosureRecord>(2);
+						recordsByOntology_.put(ontology, records);
+					}
+					records.add(record);
 				}
+				indexedClosures_.put(record, closure);
 			}
 		}
 	}
@@ -22,22 +22,53 @@ package org.liveontologies.protege.explanation.proof;
  * #L%
  */
 
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.swing.SwingUtilities;
 
 import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLAxiomChange;
+import org.semanticweb.owlapi.model.OWLEntity;
 import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyChange;
+import org.semanticweb.owlapi.model.parameters.Imports;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.ListMultimap;
+import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import com.google.common.collect.Iterators;
 
 /**
  * Represents the import closure of an ontology.
+ * <p>
+ * The axioms of the closure are looked up lazily: the occurrences of an
+ * axiom are retrieved from the indexes of the ontologies when they are
+ * requested for the first time and memoized. All axioms of the closure are
+ * indexed only when the stated axioms are accessed as a whole, e.g., by
+ * iteration.
+ * <p>
+ * The stated axioms can be read without blocking. The readers work with a
+ * {@link Snapshot} that is replaced whenever the ontologies change. The
+ * changes are applied to a private copy of the current {@link Snapshot},
+ * which is published when all changes are applied, so the readers never see
+ * partially applied changes in the memoized occurrences. Only the
+ * modifications of the stated axioms are synchronized.
  * 
  * @author Yevgeny Kazakov
  */
@@ -53,33 +84,24 @@ public class ImportsClosureRecord {
 	private final OWLOntology rootOntology_;
 
 	/**
-	 * {@link #rootOntology_} plus the ontologies (indirectly) imported by
-	 * {@link #rootOntology_}
+	 * the current state of the stated axioms
 	 */
-	private Set<OWLOntology> importsClosure_;
+	private final AtomicReference<Snapshot> snapshot_ = new AtomicReference<Snapshot>(
+			new Snapshot(null, null));
 
 	/**
-	 * a multimap from axioms without annotations to corresponding axioms
-	 * (possibly with annotations) occurring in the import closure
+	 * makes sure that only one thread indexes all axioms of the closure
 	 */
-	private final ListMultimap<OWLAxiom, OWLAxiom> originalAxioms_ = ArrayListMultimap
-			.create();
+	private final Object scanLock_ = new Object();
 
-	/**
-	 * a multimap from axioms without annotations to corresponding ontologies
-	 * containing such axioms possibly with annotations
-	 */
-	private final ListMultimap<OWLAxiom, OWLOntology> axiomOccurrences_ = ArrayListMultimap
-			.create();
+	private final Set<OWLAxiom> statedAxioms_ = new StatedAxioms();
 
-	private final List<ChangeListener> listeners_ = new ArrayList<ChangeListener>(
-			2);
+	private final List<ChangeListener> listeners_ = new CopyOnWriteArrayList<ChangeListener>();
 
 	/**
-	 * {@code true} if {@link #axiomOccurrences_} is up to date w.r.t.
-	 * {@link #rootOntology_}
+	 * incremented every time the stated axioms may change
 	 */
-	private boolean axiomsUpToDate_ = false;
+	private volatile int version_ = 0;
 
 	public ImportsClosureRecord(OWLOntology rootOntology) {
 		this.rootOntology_ = rootOntology;
@@ -100,9 +122,8 @@ public class ImportsClosureRecord {
 	 *         axiom can be found in the corresponding position of
 	 *         {@link #getMatchingAxioms(OWLAxiom)}
 	 */
-	public synchronized List<OWLOntology> getHomeOntologies(OWLAxiom axiom) {
-		updateIfNeeded();
-		return axiomOccurrences_.get(axiom.getAxiomWithoutAnnotations());
+	public List<OWLOntology> getHomeOntologies(OWLAxiom axiom) {
+		return lookup(axiom.getAxiomWithoutAnnotations()).ontologies_;
 	}
 
 	/**
@@ -113,85 +134,771 @@ public class ImportsClosureRecord {
 	 *         these axioms occur can be found in the corresponding positions of
 	 *         {@link #getHomeOntologies(OWLAxiom)}
 	 */
-	public synchronized List<OWLAxiom> getMatchingAxioms(OWLAxiom axiom) {
-		updateIfNeeded();
-		return originalAxioms_.get(axiom.getAxiomWithoutAnnotations());
+	public List<OWLAxiom> getMatchingAxioms(OWLAxiom axiom) {
+		return lookup(axiom.getAxiomWithoutAnnotations()).axioms_;
 	}
 
 	/**
-	 * @return all axioms in the import closure with removed annotations
+	 * @return all axioms in the import closure with removed annotations; the
+	 *         membership tests are answered by looking up the axioms, the
+	 *         other operations index all axioms first
 	 */
-	public synchronized Set<OWLAxiom> getStatedAxiomsWithoutAnnotations() {
-		updateIfNeeded();
-		return axiomOccurrences_.keySet();
+	public Set<OWLAxiom> getStatedAxiomsWithoutAnnotations() {
+		getSnapshotWithImportsClosure();
+		return statedAxioms_;
 	}
 
-	synchronized Set<? extends OWLOntology> getImportsClosure() {
-		return importsClosure_;
+	/**
+	 * @return the number that changes every time the result of
+	 *         {@link #getStatedAxiomsWithoutAnnotations()} may change
+	 */
+	public int getVersion() {
+		return version_;
 	}
 
-	boolean isUpToDate() {
-		return axiomsUpToDate_;
+	Set<? extends OWLOntology> getImportsClosure() {
+		return snapshot_.get().importsClosure_;
 	}
 
-	public synchronized void addListener(ChangeListener listener) {
+	public void addListener(ChangeListener listener) {
 		listeners_.add(listener);
 	}
 
-	public synchronized void removeListener(ChangeListener listener) {
+	public void removeListener(ChangeListener listener) {
 		listeners_.remove(listener);
 	}
 
-	synchronized boolean updateIfNeeded() {
-		if (axiomsUpToDate_) {
-			return false;
+	/**
+	 * @return the current {@link Snapshot} in which the imports closure is
+	 *         retrieved
+	 */
+	private Snapshot getSnapshotWithImportsClosure() {
+		for (;;) {
+			Snapshot snapshot = snapshot_.get();
+			if (snapshot.importsClosure_ != null) {
+				return snapshot;
+			}
+			// else
+			Snapshot updated = new Snapshot(rootOntology_.getImportsClosure(),
+					null);
+			if (snapshot_.compareAndSet(snapshot, updated)) {
+				return updated;
+			}
+		}
+	}
+
+	/**
+	 * @return the current {@link Snapshot} in which all axioms of the imports
+	 *         closure are indexed
+	 */
+	private Snapshot getCompleteSnapshot() {
+		Snapshot snapshot = snapshot_.get();
+		if (snapshot.index_ != null) {
+			return snapshot;
 		}
 		// else
-		importsClosure_ = rootOntology_.getImportsClosure();
-		for (OWLOntology ontology : importsClosure_) {
-			for (OWLAxiom axiom : ontology.getAxioms()) {
-				OWLAxiom key = axiom.getAxiomWithoutAnnotations();
-				originalAxioms_.put(key, axiom);
-				axiomOccurrences_.put(key, ontology);
+		synchronized (scanLock_) {
+			for (;;) {
+				snapshot = getSnapshotWithImportsClosure();
+				if (snapshot.index_ != null) {
+					return snapshot;
+				}
+				// else
+				Snapshot complete = new Snapshot(snapshot.importsClosure_,
+						scan(snapshot.importsClosure_));
+				// fails if the ontologies have changed during the scan
+				if (snapshot_.compareAndSet(snapshot, complete)) {
+					return complete;
+				}
 			}
 		}
-		axiomsUpToDate_ = true;
-		return true;
 	}
 
-	synchronized boolean invalidate() {
-		if (!axiomsUpToDate_) {
-			return false;
+	/**
+	 * Indexes all axioms of the given ontologies, which are scanned in
+	 * parallel
+	 * 
+	 * @param ontologies
+	 * @return the index of the occurrences of the axioms in the ontologies
+	 */
+	private static AxiomOccurrenceIndex scan(Set<OWLOntology> ontologies) {
+		final List<OntologyScan> scans = new ArrayList<OntologyScan>(
+				ontologies.size());
+		for (OWLOntology ontology : ontologies) {
+			scans.add(new OntologyScan(ontology));
+		}
+		ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+			private static final long serialVersionUID = -2817069113375232290L;
+
+			@Override
+			protected void compute() {
+				invokeAll(scans);
+			}
+		});
+		// merged in the order of the ontologies
+		AxiomOccurrenceIndex result = new AxiomOccurrenceIndex();
+		for (OntologyScan scan : scans) {
+			for (int i = 0; i < scan.axioms_.length; i++) {
+				result.add(scan.axioms_[i], scan.keys_[i], scan.ontology_);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Retrieves all occurrences of the given axiom and memoizes them in the
+	 * current {@link Snapshot} unless the ontologies have changed in the
+	 * meantime
+	 * 
+	 * @param key
+	 *            an axiom without annotations
+	 * @return the occurrences of the given axiom in the imports closure
+	 */
+	private Occurrences lookup(OWLAxiom key) {
+		for (;;) {
+			Snapshot snapshot = getSnapshotWithImportsClosure();
+			Occurrences result = snapshot.get(key);
+			if (result != null) {
+				return result;
+			}
+			// else
+			result = retrieve(snapshot.importsClosure_, key);
+			Occurrences previous = snapshot.overlay_.putIfAbsent(key, result);
+			if (previous != null) {
+				return previous;
+			}
+			// else
+			if (snapshot_.get() == snapshot) {
+				return result;
+			}
+			// else the result may have been computed before the changes
+			snapshot.overlay_.remove(key, result);
+		}
+	}
+
+	/**
+	 * @param ontologies
+	 * @param key
+	 *            an axiom without annotations
+	 * @return the current occurrences of the given axiom in the given
+	 *         ontologies
+	 */
+	private static Occurrences retrieve(Set<OWLOntology> ontologies,
+			OWLAxiom key) {
+		List<OWLAxiom> axioms = new ArrayList<OWLAxiom>(1);
+		List<OWLOntology> homes = new ArrayList<OWLOntology>(1);
+		for (OWLOntology ontology : ontologies) {
+			for (OWLAxiom axiom : getAxiomsIgnoreAnnotations(ontology, key)) {
+				axioms.add(axiom);
+				homes.add(ontology);
+			}
+		}
+		return new Occurrences(axioms, homes);
+	}
+
+	/**
+	 * The same as {@link OWLOntology#getAxiomsIgnoreAnnotations(OWLAxiom, Imports)}
+	 * without imports, but if possible, goes only
+	 * through the axioms that reference some entity of the given axiom instead
+	 * of all axioms of the same type
+	 * 
+	 * @param ontology
+	 * @param key
+	 *            an axiom without annotations
+	 * @return the axioms of the given ontology that are equal to the given
+	 *         axiom after removing annotations
+	 */
+	private static Collection<OWLAxiom> getAxiomsIgnoreAnnotations(
+			OWLOntology ontology, OWLAxiom key) {
+		OWLEntity entity = null;
+		for (OWLEntity candidate : key.getSignature()) {
+			if (!candidate.isBuiltIn()) {
+				entity = candidate;
+				break;
+			}
+		}
+		if (entity == null) {
+			// nothing to look up by
+			return ontology.getAxiomsIgnoreAnnotations(key, Imports.EXCLUDED);
 		}
 		// else
-		axiomsUpToDate_ = false;
-		importsClosure_ = null;
-		originalAxioms_.clear();
-		axiomOccurrences_.clear();
-		int i = 0;
-		try {
-			for (; i < listeners_.size(); i++) {
-				listeners_.get(i).statedAxiomsChanged();
-			}
-		} catch (Throwable e) {
-			LOGGER_.warn("Remove the listener due to an exception", e);
-			removeListener(listeners_.get(i));
+		List<OWLAxiom> result = new ArrayList<OWLAxiom>(1);
+		for (OWLAxiom axiom : ontology.getReferencingAxioms(entity,
+				Imports.EXCLUDED)) {
+			if (axiom.getAxiomType() == key.getAxiomType()
+					&& axiom.equalsIgnoreAnnotations(key)) {
+				result.add(axiom);
+			}
+		}
+		return result;
+	}
+
+	boolean invalidate() {
+		if (!clear()) {
+			return false;
 		}
+		// else
+		fireImportsClosureChanged();
 		return true;
 	}
 
-	void invalidateLater() {
+	/**
+	 * Replaces the current {@link Snapshot} by a copy so that the readers
+	 * that have retrieved axioms from the ontologies concurrently do not
+	 * memoize them
+	 * 
+	 * @return the published copy
+	 */
+	private Snapshot markModified() {
+		for (;;) {
+			Snapshot snapshot = snapshot_.get();
+			Snapshot modified = snapshot.modified();
+			if (snapshot_.compareAndSet(snapshot, modified)) {
+				return modified;
+			}
+		}
+	}
+
+	/**
+	 * Replaces the given published {@link Snapshot} by the given
+	 * {@link Snapshot} to which the changes were applied, unless all axioms
+	 * were indexed again in the meantime
+	 * 
+	 * @param published
+	 *            the {@link Snapshot} returned by {@link #markModified()}
+	 * @param updated
+	 *            the private copy of the published {@link Snapshot} to which
+	 *            the changes were applied
+	 */
+	private void publish(Snapshot published, Snapshot updated) {
+		for (;;) {
+			if (snapshot_.compareAndSet(published, updated)) {
+				return;
+			}
+			// else the index was computed after the changes
+			published = snapshot_.get();
+			if (published.importsClosure_.equals(updated.importsClosure_)) {
+				return;
+			}
+			// else but for the previous imports closure
+			updated = new Snapshot(updated.importsClosure_, null);
+		}
+	}
+
+	/**
+	 * Updates the stated axioms according to the given changes of the
+	 * ontologies; the listeners are notified later if the stated axioms have
+	 * changed. If an ontology in the import closure changes its imports, only
+	 * the axioms of the ontologies that enter or leave the imports closure are
+	 * added or removed.
+	 * 
+	 * @param changes
+	 * @return {@code true} if the stated axioms have changed
+	 */
+	synchronized boolean applyChanges(
+			List<? extends OWLOntologyChange> changes) {
+		Snapshot published = markModified();
+		if (published.importsClosure_ == null) {
+			// nothing was retrieved yet
+			return false;
+		}
+		// else
+		Snapshot snapshot = published.modified();
+		Delta delta = new Delta();
+		boolean importsChanged = false;
+		for (OWLOntologyChange change : changes) {
+			OWLOntology ontology = change.getOntology();
+			if (!snapshot.importsClosure_.contains(ontology)) {
+				continue;
+			}
+			// else
+			if (change.isImportChange()) {
+				// the import closure may change
+				importsChanged = true;
+				continue;
+			}
+			// else
+			if (!change.isAxiomChange()) {
+				continue;
+			}
+			// else
+			delta.apply(snapshot, ((OWLAxiomChange) change).getAxiom(),
+					ontology, change.isAddAxiom());
+		}
+		if (importsChanged) {
+			snapshot = updateImportsClosure(snapshot, delta);
+		}
+		delta.finish(snapshot);
+		publish(published, snapshot);
+		if (delta.isEmpty()) {
+			return false;
+		}
+		// else
+		final Set<OWLAxiom> added = delta.added_, removed = delta.removed_;
+		final int version = ++version_;
 		SwingUtilities.invokeLater(new Runnable() {
 			@Override
 			public void run() {
-				invalidate();
+				fireStatedAxiomsChanged(added, removed, version);
 			}
 		});
+		return true;
+	}
+
+	/**
+	 * Retrieves the current imports closure of {@link #rootOntology_} and
+	 * records the axioms of the ontologies that have entered or left the
+	 * imports closure
+	 * 
+	 * @param snapshot
+	 *            the private {@link Snapshot} to which the other changes were
+	 *            applied
+	 * @param delta
+	 *            the changes of the stated axioms to be updated
+	 * @return the private {@link Snapshot} with the current imports closure
+	 *         to which all changes are applied
+	 */
+	private Snapshot updateImportsClosure(Snapshot snapshot, Delta delta) {
+		Set<OWLOntology> previousClosure = snapshot.importsClosure_;
+		Set<OWLOntology> closure = rootOntology_.getImportsClosure();
+		Snapshot updated = new Snapshot(closure, snapshot.index_,
+				snapshot.overlay_);
+		for (OWLOntology ontology : previousClosure) {
+			if (closure.contains(ontology)) {
+				continue;
+			}
+			// else
+			for (OWLAxiom axiom : ontology.getAxioms()) {
+				delta.apply(updated, axiom, ontology, false);
+			}
+		}
+		for (OWLOntology ontology : closure) {
+			if (previousClosure.contains(ontology)) {
+				continue;
+			}
+			// else
+			for (OWLAxiom axiom : ontology.getAxioms()) {
+				delta.apply(updated, axiom, ontology, true);
+			}
+		}
+		return updated;
+	}
+
+	/**
+	 * Discards the stated axioms so that they are recomputed when next
+	 * requested
+	 * 
+	 * @return {@code true} if some axioms were retrieved
+	 */
+	private synchronized boolean clear() {
+		Snapshot previous = snapshot_.getAndSet(new Snapshot(null, null));
+		if (previous.importsClosure_ == null) {
+			return false;
+		}
+		// else
+		version_++;
+		return true;
+	}
+
+	private void fireStatedAxiomsChanged(Set<OWLAxiom> added,
+			Set<OWLAxiom> removed, int version) {
+		for (ChangeListener listener : listeners_) {
+			try {
+				listener.statedAxiomsChanged(added, removed, version);
+			} catch (Throwable e) {
+				LOGGER_.warn("Remove the listener due to an exception", e);
+				removeListener(listener);
+			}
+		}
+	}
+
+	private void fireImportsClosureChanged() {
+		for (ChangeListener listener : listeners_) {
+			try {
+				listener.importsClosureChanged();
+			} catch (Throwable e) {
+				LOGGER_.warn("Remove the listener due to an exception", e);
+				removeListener(listener);
+			}
+		}
+	}
+
+	/**
+	 * The changes of the stated axioms caused by adding or removing some
+	 * occurrences of axioms. If the occurrences of an axiom before the
+	 * changes are not known, e.g., because they were retrieved by a reader
+	 * after the ontologies had changed, the axiom is reported as added or
+	 * removed whenever the number of its occurrences has changed.
+	 */
+	private static class Delta {
+
+		/**
+		 * the axioms without annotations that may be stated now but were not
+		 * stated before
+		 */
+		final Set<OWLAxiom> added_ = new HashSet<OWLAxiom>();
+
+		/**
+		 * the axioms without annotations that may not be stated now but were
+		 * stated before
+		 */
+		final Set<OWLAxiom> removed_ = new HashSet<OWLAxiom>();
+
+		/**
+		 * the changed axioms without annotations mapped to the change of the
+		 * number of their occurrences
+		 */
+		private final Map<OWLAxiom, Integer> counts_ = new HashMap<OWLAxiom, Integer>();
+
+		/**
+		 * the changed axioms without annotations whose occurrences before the
+		 * changes are known mapped to {@code true} if they were stated
+		 */
+		private final Map<OWLAxiom, Boolean> statedBefore_ = new HashMap<OWLAxiom, Boolean>();
+
+		/**
+		 * the changed axioms without annotations whose occurrences before the
+		 * changes are not known
+		 */
+		private final Set<OWLAxiom> unknown_ = new HashSet<OWLAxiom>();
+
+		/**
+		 * Records the addition or removal of the given occurrence of an axiom
+		 * in the given {@link Snapshot}
+		 * 
+		 * @param snapshot
+		 * @param axiom
+		 * @param ontology
+		 *            the ontology in which the axiom occurs
+		 * @param add
+		 *            {@code true} if the occurrence is added and
+		 *            {@code false} if it is removed
+		 */
+		void apply(Snapshot snapshot, OWLAxiom axiom, OWLOntology ontology,
+				boolean add) {
+			OWLAxiom key = axiom.getAxiomWithoutAnnotations();
+			Integer count = counts_.get(key);
+			counts_.put(key, (count == null ? 0 : count) + (add ? 1 : -1));
+			if (unknown_.contains(key)) {
+				return;
+			}
+			// else
+			Occurrences occurrences = snapshot.get(key);
+			if (occurrences == null
+					|| occurrences.contains(axiom, ontology) == add) {
+				// not retrieved or retrieved after the change was applied
+				unknown_.add(key);
+				return;
+			}
+			// else
+			if (!statedBefore_.containsKey(key)) {
+				statedBefore_.put(key, !occurrences.isEmpty());
+			}
+			snapshot.overlay_.put(key, add ? occurrences.add(axiom, ontology)
+					: occurrences.remove(axiom, ontology));
+		}
+
+		/**
+		 * @return {@code true} if no changes were recorded
+		 */
+		boolean isEmpty() {
+			return counts_.isEmpty();
+		}
+
+		/**
+		 * Computes {@link #added_} and {@link #removed_} after all changes
+		 * were applied to the given {@link Snapshot} and drops the
+		 * occurrences of the axioms in {@link #unknown_}, which could be
+		 * memoized while the changes were applied
+		 * 
+		 * @param snapshot
+		 */
+		void finish(Snapshot snapshot) {
+			for (Map.Entry<OWLAxiom, Integer> entry : counts_.entrySet()) {
+				OWLAxiom key = entry.getKey();
+				if (unknown_.contains(key)) {
+					if (snapshot.index_ == null) {
+						snapshot.overlay_.remove(key);
+					} else {
+						// must take precedence over the index
+						snapshot.overlay_.put(key,
+								retrieve(snapshot.importsClosure_, key));
+					}
+					// could become (not) stated only if the count has changed
+					if (entry.getValue() > 0) {
+						added_.add(key);
+					} else if (entry.getValue() < 0) {
+						removed_.add(key);
+					}
+					continue;
+				}
+				// else
+				boolean stated = !snapshot.get(key).isEmpty();
+				if (stated == statedBefore_.get(key)) {
+					continue;
+				}
+				// else
+				if (stated) {
+					added_.add(key);
+				} else {
+					removed_.add(key);
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * The state of the stated axioms at some point: the imports closure, the
+	 * index of all axioms of the closure if it was computed, and the
+	 * occurrences of the axioms that were looked up or changed afterwards.
+	 * The index is not modified after it is published. The occurrences are
+	 * immutable and replaced as a whole. After a {@link Snapshot} is
+	 * published, its occurrences are only added when they are looked up;
+	 * every published {@link Snapshot} has its own occurrences, so that the
+	 * changes of the ontologies applied afterwards do not affect them.
+	 */
+	private static class Snapshot {
+
+		/**
+		 * {@link #rootOntology_} plus the ontologies (indirectly) imported by
+		 * {@link #rootOntology_}; {@code null} if not retrieved yet
+		 */
+		final Set<OWLOntology> importsClosure_;
+
+		/**
+		 * the occurrences of all axioms of {@link #importsClosure_} or
+		 * {@code null} if they were not indexed
+		 */
+		final AxiomOccurrenceIndex index_;
+
+		/**
+		 * the occurrences that take precedence over {@link #index_}; unless
+		 * {@link #index_} is computed, the occurrences of the axioms that were
+		 * looked up
+		 */
+		final ConcurrentMap<OWLAxiom, Occurrences> overlay_;
+
+		Snapshot(Set<OWLOntology> importsClosure, AxiomOccurrenceIndex index) {
+			this(importsClosure, index,
+					new ConcurrentHashMap<OWLAxiom, Occurrences>());
+		}
+
+		private Snapshot(Set<OWLOntology> importsClosure,
+				AxiomOccurrenceIndex index,
+				ConcurrentMap<OWLAxiom, Occurrences> overlay) {
+			this.importsClosure_ = importsClosure;
+			this.index_ = index;
+			this.overlay_ = overlay;
+		}
+
+		/**
+		 * @return a copy of this {@link Snapshot} that shares its index but
+		 *         not the occurrences that take precedence over it
+		 */
+		Snapshot modified() {
+			return new Snapshot(importsClosure_, index_,
+					new ConcurrentHashMap<OWLAxiom, Occurrences>(overlay_));
+		}
+
+		/**
+		 * @param key
+		 *            an axiom without annotations
+		 * @return the occurrences of the given axiom or {@code null} if they
+		 *         are not known
+		 */
+		Occurrences get(OWLAxiom key) {
+			Occurrences result = overlay_.get(key);
+			if (result != null || index_ == null) {
+				return result;
+			}
+			// else
+			return new Occurrences(index_.getAxioms(key),
+					index_.getOntologies(key));
+		}
+
+	}
+
+	/**
+	 * The axioms that are equal modulo annotations and the ontologies in
+	 * which they occur in the corresponding positions
+	 */
+	private static class Occurrences {
+
+		final List<OWLAxiom> axioms_;
+
+		final List<OWLOntology> ontologies_;
+
+		Occurrences(List<OWLAxiom> axioms, List<OWLOntology> ontologies) {
+			this.axioms_ = Collections.unmodifiableList(axioms);
+			this.ontologies_ = Collections.unmodifiableList(ontologies);
+		}
+
+		boolean isEmpty() {
+			return axioms_.isEmpty();
+		}
+
+		boolean contains(OWLAxiom axiom, OWLOntology ontology) {
+			for (int i = 0; i < axioms_.size(); i++) {
+				if (axioms_.get(i).equals(axiom)
+						&& ontologies_.get(i).equals(ontology)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		Occurrences add(OWLAxiom axiom, OWLOntology ontology) {
+			List<OWLAxiom> axioms = new ArrayList<OWLAxiom>(axioms_);
+			List<OWLOntology> ontologies = new ArrayList<OWLOntology>(
+					ontologies_);
+			axioms.add(axiom);
+			ontologies.add(ontology);
+			return new Occurrences(axioms, ontologies);
+		}
+
+		Occurrences remove(OWLAxiom axiom, OWLOntology ontology) {
+			List<OWLAxiom> axioms = new ArrayList<OWLAxiom>(axioms_.size());
+			List<OWLOntology> ontologies = new ArrayList<OWLOntology>(
+					ontologies_.size());
+			for (int i = 0; i < axioms_.size(); i++) {
+				if (axioms_.get(i).equals(axiom)
+						&& ontologies_.get(i).equals(ontology)) {
+					continue;
+				}
+				// else
+				axioms.add(axioms_.get(i));
+				ontologies.add(ontologies_.get(i));
+			}
+			return new Occurrences(axioms, ontologies);
+		}
+
+	}
+
+	/**
+	 * Retrieves the axioms of an ontology and computes the axioms without
+	 * annotations for them
+	 */
+	private static class OntologyScan extends RecursiveAction {
+
+		private static final long serialVersionUID = 4413805498711584372L;
+
+		private final OWLOntology ontology_;
+
+		private OWLAxiom[] axioms_, keys_;
+
+		OntologyScan(OWLOntology ontology) {
+			this.ontology_ = ontology;
+		}
+
+		@Override
+		protected void compute() {
+			Set<OWLAxiom> axioms = ontology_.getAxioms();
+			axioms_ = axioms.toArray(new OWLAxiom[axioms.size()]);
+			keys_ = new OWLAxiom[axioms_.length];
+			for (int i = 0; i < axioms_.length; i++) {
+				keys_[i] = axioms_[i].getAxiomWithoutAnnotations();
+			}
+		}
+
+	}
+
+	/**
+	 * The view of the axioms without annotations stated in the imports
+	 * closure
+	 */
+	private class StatedAxioms extends AbstractSet<OWLAxiom> {
+
+		@Override
+		public boolean contains(Object o) {
+			if (!(o instanceof OWLAxiom)) {
+				return false;
+			}
+			// else
+			return !lookup((OWLAxiom) o).isEmpty();
+		}
+
+		@Override
+		public Iterator<OWLAxiom> iterator() {
+			final Snapshot snapshot = getCompleteSnapshot();
+			if (snapshot.overlay_.isEmpty()) {
+				return snapshot.index_.keySet().iterator();
+			}
+			// else
+			Iterator<OWLAxiom> indexed = Iterators.filter(
+					snapshot.index_.keySet().iterator(),
+					new Predicate<OWLAxiom>() {
+						@Override
+						public boolean apply(OWLAxiom key) {
+							Occurrences occurrences = snapshot.overlay_
+									.get(key);
+							return occurrences == null
+									|| !occurrences.isEmpty();
+						}
+					});
+			Iterator<OWLAxiom> changed = Iterators.transform(
+					Iterators.filter(snapshot.overlay_.entrySet().iterator(),
+							new Predicate<Map.Entry<OWLAxiom, Occurrences>>() {
+								@Override
+								public boolean apply(
+										Map.Entry<OWLAxiom, Occurrences> entry) {
+									return !entry.getValue().isEmpty()
+											&& !snapshot.index_
+													.containsKey(entry.getKey());
+								}
+							}),
+					new Function<Map.Entry<OWLAxiom, Occurrences>, OWLAxiom>() {
+						@Override
+						public OWLAxiom apply(
+								Map.Entry<OWLAxiom, Occurrences> entry) {
+							return entry.getKey();
+						}
+					});
+			return Iterators.unmodifiableIterator(
+					Iterators.concat(indexed, changed));
+		}
+
+		@Override
+		public int size() {
+			Snapshot snapshot = getCompleteSnapshot();
+			if (snapshot.overlay_.isEmpty()) {
+				return snapshot.index_.keySet().size();
+			}
+			// else
+			return Iterators.size(iterator());
+		}
+
 	}
 
 	public interface ChangeListener {
 
-		void statedAxiomsChanged();
+		/**
+		 * Called after axioms are added to or removed from the ontologies in
+		 * the imports closure or ontologies enter or leave the imports
+		 * closure; the notifications are delivered in the event dispatch
+		 * thread in the order of the changes
+		 * 
+		 * @param added
+		 *            the axioms without annotations that may be stated now
+		 *            but were not stated before; every axiom that has become
+		 *            stated is included
+		 * @param removed
+		 *            the axioms without annotations that may not be stated
+		 *            anymore but were stated before; every axiom that is not
+		 *            stated anymore is included
+		 * @param version
+		 *            the value of {@link ImportsClosureRecord#getVersion()}
+		 *            after the change
+		 */
+		void statedAxiomsChanged(Set<OWLAxiom> added, Set<OWLAxiom> removed,
+				int version);
+
+		/**
+		 * Called when the stated axioms are discarded as a whole, e.g., when
+		 * the record is not used anymore; in this case any of the stated
+		 * axioms may have changed
+		 */
+		void importsClosureChanged();
 
 	}
 
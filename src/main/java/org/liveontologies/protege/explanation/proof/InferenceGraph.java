@@ -0,0 +1,454 @@
+package org.liveontologies.protege.explanation.proof;
+
+/*-
+ * #%L
+ * Protege Proof-Based Explanation
+ * $Id:$
+ * $HeadURL:$
+ * %%
+ * Copyright (C) 2014 - 2016 Live Ontologies Project
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+
+import org.liveontologies.puli.Inference;
+import org.liveontologies.puli.Proof;
+import org.liveontologies.puli.pinpointing.InterruptMonitor;
+
+/**
+ * The inferences of a {@link Proof} used for deriving a goal conclusion in
+ * which conclusions are represented by their indexes. Once created, the
+ * object is not modified, so it can be used from several threads.
+ * 
+ * @param <C>
+ *            the type of conclusions
+ */
+class InferenceGraph<C> {
+
+	/**
+	 * the conclusions used for deriving the goal; the goal has index 0
+	 */
+	private final List<C> conclusions_ = new ArrayList<C>();
+
+	/**
+	 * the inferences used for deriving the goal; the inferences of each
+	 * conclusion are stored consecutively
+	 */
+	private final List<Inference<? extends C>> inferences_ = new ArrayList<Inference<? extends C>>();
+
+	/**
+	 * the index of the first inference of every conclusion, plus the number
+	 * of inferences
+	 */
+	private final int[] firstInference_;
+
+	/**
+	 * the index of the conclusion of every inference
+	 */
+	private final int[] conclusionOf_;
+
+	/**
+	 * the indexes of the premises of every inference
+	 */
+	private final int[][] premisesOf_;
+
+	/**
+	 * for every conclusion, the inferences in which it is used as a premise
+	 * (as many times as it occurs in the premises)
+	 */
+	private final int[][] premiseIn_;
+
+	/**
+	 * the inferences without premises
+	 */
+	private final int[] initial_;
+
+	/**
+	 * Retrieves the inferences used for deriving the given goal from the
+	 * given {@link Proof}
+	 * 
+	 * @param proof
+	 * @param goal
+	 * @param monitor
+	 * @throws CancellationException
+	 *             if the given {@link InterruptMonitor} reports interruption
+	 */
+	InferenceGraph(Proof<? extends Inference<? extends C>> proof, C goal,
+			InterruptMonitor monitor) throws CancellationException {
+		Map<C, Integer> index = new HashMap<C, Integer>();
+		List<Integer> firstInference = new ArrayList<Integer>();
+		List<Integer> conclusionOf = new ArrayList<Integer>();
+		List<int[]> premisesOf = new ArrayList<int[]>();
+		index.put(goal, 0);
+		conclusions_.add(goal);
+		for (int next = 0; next < conclusions_.size(); next++) {
+			CancellableProofs.checkCancelled(monitor);
+			firstInference.add(inferences_.size());
+			for (Inference<? extends C> inf : proof
+					.getInferences(conclusions_.get(next))) {
+				List<? extends C> premises = inf.getPremises();
+				int[] premiseIds = new int[premises.size()];
+				for (int i = 0; i < premiseIds.length; i++) {
+					C premise = premises.get(i);
+					Integer id = index.get(premise);
+					if (id == null) {
+						id = conclusions_.size();
+						index.put(premise, id);
+						conclusions_.add(premise);
+					}
+					premiseIds[i] = id;
+				}
+				inferences_.add(inf);
+				conclusionOf.add(next);
+				premisesOf.add(premiseIds);
+			}
+		}
+		int inferenceCount = conclusionOf.size();
+		firstInference_ = new int[conclusions_.size() + 1];
+		firstInference_[conclusions_.size()] = inferenceCount;
+		for (int c = 0; c < conclusions_.size(); c++) {
+			firstInference_[c] = firstInference.get(c);
+		}
+		conclusionOf_ = new int[inferenceCount];
+		premisesOf_ = premisesOf.toArray(new int[inferenceCount][]);
+		int[] premiseInCount = new int[conclusions_.size()];
+		int initialCount = 0;
+		for (int i = 0; i < inferenceCount; i++) {
+			conclusionOf_[i] = conclusionOf.get(i);
+			if (premisesOf_[i].length == 0) {
+				initialCount++;
+			}
+			for (int premise : premisesOf_[i]) {
+				premiseInCount[premise]++;
+			}
+		}
+		premiseIn_ = new int[conclusions_.size()][];
+		for (int c = 0; c < premiseIn_.length; c++) {
+			premiseIn_[c] = new int[premiseInCount[c]];
+		}
+		initial_ = new int[initialCount];
+		initialCount = 0;
+		for (int i = 0; i < inferenceCount; i++) {
+			if (premisesOf_[i].length == 0) {
+				initial_[initialCount++] = i;
+			}
+			for (int premise : premisesOf_[i]) {
+				premiseIn_[premise][--premiseInCount[premise]] = i;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of conclusions used for deriving the goal (including
+	 *         the goal)
+	 */
+	int getConclusionCount() {
+		return conclusions_.size();
+	}
+
+	/**
+	 * @param conclusion
+	 *            the index of a conclusion
+	 * @return the conclusion with the given index
+	 */
+	C getConclusion(int conclusion) {
+		return conclusions_.get(conclusion);
+	}
+
+	/**
+	 * @param conclusion
+	 *            the index of a conclusion
+	 * @return the index of the first inference deriving the given conclusion;
+	 *         the inferences of the conclusion have indexes from this one to
+	 *         {@link #getInferencesEnd(int)} (exclusively)
+	 */
+	int getInferencesBegin(int conclusion) {
+		return firstInference_[conclusion];
+	}
+
+	/**
+	 * @param conclusion
+	 *            the index of a conclusion
+	 * @return the index after the last inference deriving the given
+	 *         conclusion
+	 * 
+	 * @see #getInferencesBegin(int)
+	 */
+	int getInferencesEnd(int conclusion) {
+		return firstInference_[conclusion + 1];
+	}
+
+	/**
+	 * @param inference
+	 *            the index of an inference
+	 * @return the inference with the given index
+	 */
+	Inference<? extends C> getInference(int inference) {
+		return inferences_.get(inference);
+	}
+
+	/**
+	 * @param inference
+	 *            the index of an inference
+	 * @return the indexes of the premises of the inference with the given
+	 *         index; the result should not be modified
+	 */
+	int[] getPremises(int inference) {
+		return premisesOf_[inference];
+	}
+
+	/**
+	 * @param inference
+	 *            the index of an inference
+	 * @return the index of the conclusion of the inference with the given
+	 *         index
+	 */
+	int getConclusionOf(int inference) {
+		return conclusionOf_[inference];
+	}
+
+	/**
+	 * @param conclusion
+	 *            the index of a conclusion
+	 * @return the indexes of the inferences in which the conclusion with the
+	 *         given index is used as a premise, as many times as it occurs
+	 *         in the premises; the result should not be modified
+	 */
+	int[] getPremiseIn(int conclusion) {
+		return premiseIn_[conclusion];
+	}
+
+	/**
+	 * @param selected
+	 *            an array with an element for every conclusion index
+	 * @return the conclusions whose indexes are selected in the given array
+	 */
+	Set<C> getConclusions(boolean[] selected) {
+		Set<C> result = new HashSet<C>();
+		for (int i = 0; i < selected.length; i++) {
+			if (selected[i]) {
+				result.add(conclusions_.get(i));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the strongly connected components of the graph in which every
+	 * conclusion is connected to the premises of its inferences. Two
+	 * conclusions belong to the same component if each of them is used in
+	 * the proof of the other.
+	 * 
+	 * @return the array that assigns to every conclusion index the index of
+	 *         its component
+	 */
+	int[] computeComponents() {
+		int n = conclusions_.size();
+		int[] component = new int[n];
+		int[] order = new int[n];
+		int[] lowlink = new int[n];
+		Arrays.fill(order, -1);
+		// the next premise to visit for conclusions on the call stack
+		int[] nextInference = new int[n];
+		int[] nextPremise = new int[n];
+		int[] callStack = new int[n];
+		int[] stack = new int[n];
+		boolean[] onStack = new boolean[n];
+		int callStackSize = 0, stackSize = 0, counter = 0, componentCount = 0;
+		for (int root = 0; root < n; root++) {
+			if (order[root] >= 0) {
+				continue;
+			}
+			// else
+			int next = root;
+			for (;;) {
+				if (next >= 0) {
+					// visit
+					order[next] = lowlink[next] = counter++;
+					stack[stackSize++] = next;
+					onStack[next] = true;
+					nextInference[next] = firstInference_[next];
+					nextPremise[next] = 0;
+					callStack[callStackSize++] = next;
+				}
+				if (callStackSize == 0) {
+					break;
+				}
+				// else
+				int c = callStack[callStackSize - 1];
+				next = -1;
+				while (nextInference[c] < firstInference_[c + 1]) {
+					int[] premises = premisesOf_[nextInference[c]];
+					if (nextPremise[c] < premises.length) {
+						next = premises[nextPremise[c]++];
+						break;
+					}
+					// else
+					nextInference[c]++;
+					nextPremise[c] = 0;
+				}
+				if (next >= 0) {
+					if (order[next] < 0) {
+						continue;
+					}
+					// else already visited
+					if (onStack[next]) {
+						lowlink[c] = Math.min(lowlink[c], order[next]);
+					}
+					next = -1;
+					continue;
+				}
+				// else all premises of c are visited
+				callStackSize--;
+				if (callStackSize > 0) {
+					int parent = callStack[callStackSize - 1];
+					lowlink[parent] = Math.min(lowlink[parent], lowlink[c]);
+				}
+				if (lowlink[c] == order[c]) {
+					int member;
+					do {
+						member = stack[--stackSize];
+						onStack[member] = false;
+						component[member] = componentCount;
+					} while (member != c);
+					componentCount++;
+				}
+			}
+		}
+		return component;
+	}
+
+	/**
+	 * @return a new {@link DerivabilityChecker} for this graph; each checker
+	 *         can be used only by one thread at a time
+	 */
+	DerivabilityChecker getChecker() {
+		return new DerivabilityChecker();
+	}
+
+	/**
+	 * Checks derivability of the goal conclusion when one of the conclusions
+	 * is blocked; the arrays are reused between the checks to avoid
+	 * allocations
+	 */
+	class DerivabilityChecker {
+
+		/**
+		 * the number of premises of every inference that are not yet derived
+		 */
+		private final int[] remaining_ = new int[conclusionOf_.length];
+
+		private final boolean[] derived_ = new boolean[conclusions_.size()];
+
+		/**
+		 * the inferences whose premises are derived
+		 */
+		private final int[] toApply_ = new int[conclusionOf_.length];
+
+		/**
+		 * the conclusions that cannot be used in derivations
+		 */
+		private final boolean[] blocked_ = new boolean[conclusions_.size()];
+
+		/**
+		 * @param blocked
+		 *            the index of the conclusion that cannot be used in
+		 *            derivations
+		 * @return {@code true} if the goal conclusion is derivable without
+		 *         using the blocked conclusion
+		 */
+		boolean isGoalDerivable(int blocked) {
+			blocked_[blocked] = true;
+			try {
+				return derive(0);
+			} finally {
+				blocked_[blocked] = false;
+			}
+		}
+
+		/**
+		 * @param blocked
+		 *            the indexes of the conclusions that cannot be used in
+		 *            derivations
+		 * @return the array that has {@code true} at the indexes of the
+		 *         conclusions derivable without using the blocked
+		 *         conclusions; the array is reused by the next call of this
+		 *         checker
+		 */
+		boolean[] getDerivable(int... blocked) {
+			for (int c : blocked) {
+				blocked_[c] = true;
+			}
+			try {
+				derive(-1);
+				return derived_;
+			} finally {
+				for (int c : blocked) {
+					blocked_[c] = false;
+				}
+			}
+		}
+
+		/**
+		 * Computes the conclusions derivable without using the blocked
+		 * conclusions until the target conclusion is derived
+		 * 
+		 * @param target
+		 *            the index of the conclusion or {@code -1} to compute all
+		 *            derivable conclusions
+		 * @return {@code true} if the target conclusion is derived
+		 */
+		private boolean derive(int target) {
+			for (int i = 0; i < remaining_.length; i++) {
+				remaining_[i] = premisesOf_[i].length;
+			}
+			for (int c = 0; c < derived_.length; c++) {
+				derived_[c] = false;
+			}
+			int size = 0;
+			for (int inf : initial_) {
+				toApply_[size++] = inf;
+			}
+			while (size > 0) {
+				int conclusion = conclusionOf_[toApply_[--size]];
+				if (blocked_[conclusion] || derived_[conclusion]) {
+					continue;
+				}
+				// else
+				derived_[conclusion] = true;
+				if (conclusion == target) {
+					return true;
+				}
+				// else
+				for (int inf : premiseIn_[conclusion]) {
+					if (--remaining_[inf] == 0) {
+						toApply_[size++] = inf;
+					}
+				}
+			}
+			return false;
+		}
+
+	}
+
+}
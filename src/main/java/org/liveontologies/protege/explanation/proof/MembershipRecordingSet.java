@@ -0,0 +1,136 @@
+package org.liveontologies.protege.explanation.proof;
+
+/*-
+ * #%L
+ * Protege Proof-Based Explanation
+ * $Id:$
+ * $HeadURL:$
+ * %%
+ * Copyright (C) 2014 - 2016 Live Ontologies Project
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link Set} view of another {@link Set} that records the results of the
+ * membership tests {@link #contains(Object)}. This makes it possible to check
+ * whether a computation that used only such tests would produce the same
+ * result if the underlying {@link Set} is modified. The recorded results are
+ * kept the same as for the first test for each object. If the elements of the
+ * set are accessed in other ways (e.g., by iteration), the results cannot be
+ * validated anymore.
+ * 
+ * @param <E>
+ *            the type of elements in this set
+ */
+public class MembershipRecordingSet<E> extends AbstractSet<E> {
+
+	private final Set<E> delegate_;
+
+	/**
+	 * the objects for which membership was tested mapped to the results of
+	 * the first test
+	 */
+	private final Map<Object, Boolean> tested_ = new ConcurrentHashMap<Object, Boolean>();
+
+	/**
+	 * {@code true} if elements of {@link #delegate_} were accessed not only by
+	 * membership tests
+	 */
+	private volatile boolean accessedOtherwise_ = false;
+
+	public MembershipRecordingSet(Set<E> delegate) {
+		this.delegate_ = delegate;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		boolean result = delegate_.contains(o);
+		Boolean previous = tested_.putIfAbsent(o, result);
+		if (previous == null) {
+			return result;
+		}
+		// else keep the answers consistent with the recorded ones
+		return previous;
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		accessedOtherwise_ = true;
+		return delegate_.iterator();
+	}
+
+	@Override
+	public int size() {
+		accessedOtherwise_ = true;
+		return delegate_.size();
+	}
+
+	/**
+	 * @return the number of different objects for which
+	 *         {@link #contains(Object)} was called
+	 */
+	public int getTestedCount() {
+		return tested_.size();
+	}
+
+	/**
+	 * @param changed
+	 *            the objects that were added to or removed from the
+	 *            underlying {@link Set}
+	 * @return {@code true} if {@link #contains(Object)} was called for some
+	 *         of the given objects or the elements of this {@link Set} were
+	 *         accessed in other ways
+	 */
+	public boolean isAffectedBy(Collection<?> changed) {
+		if (accessedOtherwise_) {
+			return true;
+		}
+		// else
+		for (Object o : changed) {
+			if (tested_.containsKey(o)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param other
+	 * @return {@code true} if the given {@link Set} contains exactly the same
+	 *         objects, for which {@link #contains(Object)} was called, as this
+	 *         {@link Set} and the elements of this {@link Set} were not
+	 *         accessed in any other way
+	 */
+	public boolean agreesWith(Set<?> other) {
+		if (accessedOtherwise_) {
+			return false;
+		}
+		// else
+		for (Map.Entry<Object, Boolean> entry : tested_.entrySet()) {
+			if (other.contains(entry.getKey()) != entry.getValue()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,126 @@
+package org.liveontologies.protege.explanation.proof;
+
+/*-
+ * #%L
+ * Protege Proof-Based Explanation
+ * $Id:$
+ * $HeadURL:$
+ * %%
+ * Copyright (C) 2014 - 2016 Live Ontologies Project
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.liveontologies.puli.DelegatingProof;
+import org.liveontologies.puli.DynamicProof;
+import org.liveontologies.puli.Inference;
+import org.liveontologies.puli.Proofs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link DynamicProof} that memoizes the inferences returned by another
+ * {@link DynamicProof} for every conclusion until the inferences change.
+ * Unlike {@link Proofs#cache(DynamicProof)}, this proof can be used by
+ * several threads at the same time, and the memoized inferences are
+ * discarded before the listeners of this proof are notified about the
+ * change.
+ * 
+ * @param <I>
+ *            the type of inferences provided by this proof
+ */
+class MemoizingProof<I extends Inference<?>>
+		extends DelegatingProof<I, DynamicProof<? extends I>>
+		implements DynamicProof<I>, DynamicProof.ChangeListener {
+
+	// logger for this class
+	private static final Logger LOGGER_ = LoggerFactory
+			.getLogger(MemoizingProof.class);
+
+	private final ConcurrentMap<Object, Collection<? extends I>> inferences_ = new ConcurrentHashMap<Object, Collection<? extends I>>();
+
+	private final List<DynamicProof.ChangeListener> listeners_ = new CopyOnWriteArrayList<DynamicProof.ChangeListener>();
+
+	/**
+	 * incremented every time the inferences of the delegate change
+	 */
+	private final AtomicInteger version_ = new AtomicInteger();
+
+	MemoizingProof(DynamicProof<? extends I> delegate) {
+		super(delegate);
+		delegate.addListener(this);
+	}
+
+	@Override
+	public Collection<? extends I> getInferences(Object conclusion) {
+		Collection<? extends I> result = inferences_.get(conclusion);
+		if (result != null) {
+			return result;
+		}
+		// else
+		int version = version_.get();
+		result = super.getInferences(conclusion);
+		Collection<? extends I> previous = inferences_.putIfAbsent(conclusion,
+				result);
+		if (previous != null) {
+			return previous;
+		}
+		// else
+		if (version_.get() != version) {
+			// could be obtained before the change
+			inferences_.remove(conclusion, result);
+		}
+		return result;
+	}
+
+	@Override
+	public void inferencesChanged() {
+		version_.incrementAndGet();
+		inferences_.clear();
+		for (DynamicProof.ChangeListener listener : listeners_) {
+			try {
+				listener.inferencesChanged();
+			} catch (Throwable e) {
+				LOGGER_.warn("Remove the listener due to an exception", e);
+				removeListener(listener);
+			}
+		}
+	}
+
+	@Override
+	public void addListener(DynamicProof.ChangeListener listener) {
+		listeners_.add(listener);
+	}
+
+	@Override
+	public void removeListener(DynamicProof.ChangeListener listener) {
+		listeners_.remove(listener);
+	}
+
+	@Override
+	public void dispose() {
+		getDelegate().removeListener(this);
+		inferences_.clear();
+		listeners_.clear();
+		getDelegate().dispose();
+	}
+
+}
@@ -0,0 +1,153 @@
+package org.liveontologies.protege.explanation.proof;
+
+/*-
+ * #%L
+ * Protege Proof-Based Explanation
+ * $Id:$
+ * $HeadURL:$
+ * %%
+ * Copyright (C) 2014 - 2016 Live Ontologies Project
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.liveontologies.puli.DynamicProof;
+import org.liveontologies.puli.Inference;
+import org.liveontologies.puli.ProofUnion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.MapMaker;
+
+/**
+ * A {@link DynamicProof} that combines the inferences of several
+ * {@link DynamicProof}s. Unlike {@link ProofUnion}, the inferences of this
+ * proof for every conclusion have different premises: if several proofs
+ * have inferences with the same conclusion and premises, only the inference
+ * of the first such proof is returned. For every returned inference, the
+ * source of the proof that supplied it can be retrieved using
+ * {@link #getSource(Object)}. The proofs are disposed together with this
+ * proof.
+ * 
+ * @param <I>
+ *            the type of inferences provided by this proof
+ * @param <S>
+ *            the type of sources of the merged proofs
+ */
+class MergedProof<I extends Inference<?>, S>
+		implements DynamicProof<I>, DynamicProof.ChangeListener {
+
+	// logger for this class
+	private static final Logger LOGGER_ = LoggerFactory
+			.getLogger(MergedProof.class);
+
+	private final List<? extends DynamicProof<? extends I>> proofs_;
+
+	/**
+	 * the sources of {@link #proofs_} at the corresponding positions
+	 */
+	private final List<? extends S> sources_;
+
+	/**
+	 * the sources of the proofs that supplied the returned inferences; the
+	 * inferences are compared by identity and not retained
+	 */
+	private final Map<Object, S> supplied_ = new MapMaker().weakKeys()
+			.makeMap();
+
+	private final List<DynamicProof.ChangeListener> listeners_ = new CopyOnWriteArrayList<DynamicProof.ChangeListener>();
+
+	/**
+	 * @param proofs
+	 *            the proofs to be merged
+	 * @param sources
+	 *            the sources of the proofs at the corresponding positions
+	 */
+	MergedProof(List<? extends DynamicProof<? extends I>> proofs,
+			List<? extends S> sources) {
+		this.proofs_ = proofs;
+		this.sources_ = sources;
+		for (DynamicProof<? extends I> proof : proofs) {
+			proof.addListener(this);
+		}
+	}
+
+	@Override
+	public Collection<? extends I> getInferences(Object conclusion) {
+		Map<List<?>, I> result = new LinkedHashMap<List<?>, I>();
+		for (int i = 0; i < proofs_.size(); i++) {
+			for (I inf : proofs_.get(i).getInferences(conclusion)) {
+				List<?> premises = inf.getPremises();
+				if (!result.containsKey(premises)) {
+					result.put(premises, inf);
+					supplied_.put(inf, sources_.get(i));
+				}
+			}
+		}
+		return new ArrayList<I>(result.values());
+	}
+
+	/**
+	 * @param inference
+	 * @return the source of the proof that supplied the given inference
+	 *         returned by {@link #getInferences(Object)} or {@code null} if
+	 *         this inference was not returned
+	 */
+	S getSource(Object inference) {
+		return supplied_.get(inference);
+	}
+
+	@Override
+	public void inferencesChanged() {
+		for (DynamicProof.ChangeListener listener : listeners_) {
+			try {
+				listener.inferencesChanged();
+			} catch (Throwable e) {
+				LOGGER_.warn("Remove the listener due to an exception", e);
+				removeListener(listener);
+			}
+		}
+	}
+
+	@Override
+	public void addListener(DynamicProof.ChangeListener listener) {
+		listeners_.add(listener);
+	}
+
+	@Override
+	public void removeListener(DynamicProof.ChangeListener listener) {
+		listeners_.remove(listener);
+	}
+
+	@Override
+	public void dispose() {
+		listeners_.clear();
+		for (DynamicProof<? extends I> proof : proofs_) {
+			proof.removeListener(this);
+			try {
+				proof.dispose();
+			} catch (Throwable e) {
+				LOGGER_.warn("Cannot dispose the proof", e);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,247 @@
+package org.liveontologies.protege.explanation.proof;
+
+/*-
+ * #%L
+ * Protege Proof-Based Explanation
+ * $Id:$
+ * $HeadURL:$
+ * %%
+ * Copyright (C) 2014 - 2016 Live Ontologies Project
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.liveontologies.protege.explanation.proof.preferences.ProofBasedExplPrefs;
+import org.liveontologies.protege.explanation.proof.service.ProofService;
+import org.liveontologies.puli.DynamicProof;
+import org.liveontologies.puli.Inference;
+import org.semanticweb.owlapi.model.AxiomType;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link ProofService} that provides the {@link MergedProof} of the proofs
+ * obtained from several other {@link ProofService}s. The proofs are obtained
+ * concurrently and the merged proof is processed only once, so that the
+ * inferences of all services can be compared without switching between
+ * them. The proofs of the services that fail to provide them are omitted.
+ * The answers of the services whether they can provide proofs are taken from
+ * {@link ProofServiceManager}, and the examples for inferences are provided
+ * by the services that supplied them, as recorded by the {@link MergedProof}.
+ * 
+ * @see ProofBasedExplPrefs#mergeProofServices
+ */
+class MergedProofService extends ProofService {
+
+	// logger for this class
+	private static final Logger LOGGER_ = LoggerFactory
+			.getLogger(MergedProofService.class);
+
+	private static final String PLUGIN_ID_ = "org.liveontologies.protege.explanation.proof.merged";
+
+	/**
+	 * the services whose proofs are merged
+	 */
+	private final List<ProofService> services_;
+
+	private final ProofServiceManager serviceMan_;
+
+	MergedProofService(ProofServiceManager serviceMan,
+			Collection<? extends ProofService> services) {
+		this.services_ = new CopyOnWriteArrayList<ProofService>(services);
+		this.serviceMan_ = serviceMan;
+		setup(serviceMan.getOWLEditorKit(), PLUGIN_ID_,
+				"All proof services (merged)");
+	}
+
+	/**
+	 * Merges also the proofs of the given {@link ProofService}; this takes
+	 * effect the next time the proof is obtained
+	 * 
+	 * @param service
+	 */
+	void addService(ProofService service) {
+		services_.add(service);
+	}
+
+	/**
+	 * @return the identifier that depends on the merged services, so that
+	 *         the merged proofs for different services are not confused in
+	 *         the {@link ProofCache}
+	 */
+	@Override
+	public String getPluginId() {
+		StringBuilder result = new StringBuilder(super.getPluginId());
+		for (ProofService service : services_) {
+			result.append(' ').append(service.getPluginId());
+		}
+		return result.toString();
+	}
+
+	@Override
+	public void initialise() throws Exception {
+		// nothing to do
+	}
+
+	@Override
+	public boolean supportsAxiomType(AxiomType<?> type) {
+		for (ProofService service : services_) {
+			if (service.supportsAxiomType(type)) {
+				return true;
+			}
+		}
+		// else
+		return false;
+	}
+
+	@Override
+	public boolean hasProof(OWLAxiom entailment) {
+		for (ProofService service : services_) {
+			if (serviceMan_.hasProof(service, entailment)) {
+				return true;
+			}
+		}
+		// else
+		return false;
+	}
+
+	/**
+	 * Checks the merged services concurrently using
+	 * {@link ProofServiceManager#hasProofAsync(ProofService, OWLAxiom)}; the
+	 * result is {@code true} as soon as some service answers {@code true}
+	 */
+	@Override
+	public CompletableFuture<Boolean> hasProofAsync(final OWLAxiom entailment,
+			Executor executor) {
+		final CompletableFuture<Boolean> result = new CompletableFuture<Boolean>();
+		final AtomicInteger pending = new AtomicInteger(services_.size());
+		if (pending.get() == 0) {
+			result.complete(false);
+			return result;
+		}
+		// else
+		for (final ProofService service : services_) {
+			serviceMan_.hasProofAsync(service, entailment)
+					.whenComplete(new BiConsumer<Boolean, Throwable>() {
+						@Override
+						public void accept(Boolean hasProof,
+								Throwable error) {
+							if (error != null) {
+								LOGGER_.warn(
+										"{}: cannot check if {} provides the proof",
+										entailment, service, error);
+							}
+							if (Boolean.TRUE.equals(hasProof)) {
+								result.complete(true);
+							} else if (pending.decrementAndGet() == 0) {
+								result.complete(false);
+							}
+						}
+					});
+		}
+		return result;
+	}
+
+	@Override
+	public DynamicProof<Inference<? extends OWLAxiom>> getProof(
+			OWLAxiom entailment) {
+		List<DynamicProof<Inference<? extends OWLAxiom>>> proofs = new ArrayList<DynamicProof<Inference<? extends OWLAxiom>>>();
+		List<ProofService> sources = new ArrayList<ProofService>();
+		for (ProofService service : services_) {
+			try {
+				proofs.add(serviceMan_.getProof(service, entailment));
+				sources.add(service);
+			} catch (Throwable e) {
+				LOGGER_.warn("{}: cannot obtain the proof from {}", entailment,
+						service, e);
+			}
+		}
+		return new MergedProof<Inference<? extends OWLAxiom>, ProofService>(
+				proofs, sources);
+	}
+
+	@Override
+	public CompletableFuture<DynamicProof<Inference<? extends OWLAxiom>>> getProofAsync(
+			final OWLAxiom entailment, Executor executor) {
+		final List<ProofService> services = new ArrayList<ProofService>(
+				services_);
+		final List<CompletableFuture<DynamicProof<Inference<? extends OWLAxiom>>>> requests = new ArrayList<CompletableFuture<DynamicProof<Inference<? extends OWLAxiom>>>>();
+		for (final ProofService service : services) {
+			requests.add(service
+					.getProofAsync(entailment, serviceMan_.getExecutor(service))
+					.exceptionally(
+							new Function<Throwable, DynamicProof<Inference<? extends OWLAxiom>>>() {
+								@Override
+								public DynamicProof<Inference<? extends OWLAxiom>> apply(
+										Throwable error) {
+									LOGGER_.warn(
+											"{}: cannot obtain the proof from {}",
+											entailment, service, error);
+									return null;
+								}
+							}));
+		}
+		return CompletableFuture
+				.allOf(requests.toArray(new CompletableFuture<?>[requests.size()]))
+				.thenApply(
+						new Function<Void, DynamicProof<Inference<? extends OWLAxiom>>>() {
+							@Override
+							public DynamicProof<Inference<? extends OWLAxiom>> apply(
+									Void ignore) {
+								List<DynamicProof<Inference<? extends OWLAxiom>>> proofs = new ArrayList<DynamicProof<Inference<? extends OWLAxiom>>>();
+								List<ProofService> sources = new ArrayList<ProofService>();
+								for (int i = 0; i < requests.size(); i++) {
+									DynamicProof<Inference<? extends OWLAxiom>> proof = requests
+											.get(i).join();
+									if (proof != null) {
+										proofs.add(proof);
+										sources.add(services.get(i));
+									}
+								}
+								return new MergedProof<Inference<? extends OWLAxiom>, ProofService>(
+										proofs, sources);
+							}
+						});
+	}
+
+	/**
+	 * @return {@code null} since only the {@link MergedProof} that supplied
+	 *         the given inference knows the service whose example should be
+	 *         used
+	 * 
+	 * @see ProofManager#getExample(Inference)
+	 */
+	@Override
+	public Inference<? extends OWLAxiom> getExample(
+			Inference<? extends OWLAxiom> inference) {
+		return null;
+	}
+
+	@Override
+	public void dispose() {
+		// the merged services are disposed by the ProofServiceManager
+	}
+
+}
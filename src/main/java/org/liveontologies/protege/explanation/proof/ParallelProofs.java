@@ -0,0 +1,144 @@
+package org.liveontologies.protege.explanation.proof;
+
+/*-
+ * #%L
+ * Protege Proof-Based Explanation
+ * $Id:$
+ * $HeadURL:$
+ * %%
+ * Copyright (C) 2014 - 2016 Live Ontologies Project
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.liveontologies.puli.Inference;
+import org.liveontologies.puli.Proof;
+import org.liveontologies.puli.Proofs;
+import org.liveontologies.puli.pinpointing.InterruptMonitor;
+
+/**
+ * A collection of static methods for processing {@link Proof}s that use
+ * several threads. The inferences are first retrieved from the {@link Proof}
+ * in the calling thread (since {@link Proof}s are not required to be
+ * thread-safe) and saved in a compact representation, which is then
+ * processed in parallel using the common {@link ForkJoinPool}. The results
+ * are the same as for the corresponding methods in {@link Proofs} and
+ * {@link CancellableProofs}.
+ * 
+ * @see InferenceGraph
+ * @see CancellableProofs
+ */
+public class ParallelProofs {
+
+	/**
+	 * the maximal number of conclusions tested by one task without splitting
+	 */
+	private static final int CANDIDATES_PER_TASK_ = 16;
+
+	/**
+	 * The same as
+	 * {@link CancellableProofs#getEssentialConclusions(Proof, Object, InterruptMonitor)}
+	 * but the conclusions are tested in parallel
+	 * 
+	 * @param proof
+	 * @param goal
+	 * @param monitor
+	 * @return the set of conclusions without which the goal would not be
+	 *         derivable using the given inferences
+	 * @throws CancellationException
+	 *             if the given {@link InterruptMonitor} reports interruption
+	 */
+	public static <C, I extends Inference<? extends C>> Set<C> getEssentialConclusions(
+			Proof<? extends I> proof, C goal, InterruptMonitor monitor)
+			throws CancellationException {
+		InferenceGraph<C> graph = new InferenceGraph<C>(proof, goal, monitor);
+		boolean[] essential = new boolean[graph.getConclusionCount()];
+		ForkJoinPool.commonPool().invoke(new EssentialConclusionsTask(graph,
+				essential, 0, essential.length, monitor));
+		return graph.getConclusions(essential);
+	}
+
+	/**
+	 * The same as
+	 * {@link CancellableProofs#prune(Proof, Object, InterruptMonitor)} but the
+	 * essential conclusions are computed in parallel
+	 * 
+	 * @param proof
+	 * @param goal
+	 * @param monitor
+	 * @return a proof obtained from the given proofs by removing some
+	 *         inferences that do not have effect on the derivation relation
+	 *         between the asserted conclusions in the proof and the goal
+	 *         conclusion
+	 * @throws CancellationException
+	 *             if the given {@link InterruptMonitor} reports interruption
+	 * 
+	 * @see #getEssentialConclusions(Proof, Object, InterruptMonitor)
+	 */
+	public static <I extends Inference<?>> Proof<I> prune(
+			Proof<? extends I> proof, Object goal, InterruptMonitor monitor)
+			throws CancellationException {
+		Proof<I> cancellable = CancellableProofs.cancellable(proof, monitor);
+		return new CancellableProofs.PrunedProof<I>(cancellable,
+				getEssentialConclusions(cancellable, goal, monitor), goal);
+	}
+
+	private static class EssentialConclusionsTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 4512734086238915624L;
+
+		private final InferenceGraph<?> graph_;
+
+		private final boolean[] essential_;
+
+		private final int from_, to_;
+
+		private final InterruptMonitor monitor_;
+
+		EssentialConclusionsTask(InferenceGraph<?> graph, boolean[] essential,
+				int from, int to, InterruptMonitor monitor) {
+			this.graph_ = graph;
+			this.essential_ = essential;
+			this.from_ = from;
+			this.to_ = to;
+			this.monitor_ = monitor;
+		}
+
+		@Override
+		protected void compute() {
+			if (to_ - from_ > CANDIDATES_PER_TASK_) {
+				int middle = (from_ + to_) >>> 1;
+				invokeAll(
+						new EssentialConclusionsTask(graph_, essential_, from_,
+								middle, monitor_),
+						new EssentialConclusionsTask(graph_, essential_, middle,
+								to_, monitor_));
+				return;
+			}
+			// else
+			InferenceGraph<?>.DerivabilityChecker checker = graph_.getChecker();
+			for (int candidate = from_; candidate < to_; candidate++) {
+				CancellableProofs.checkCancelled(monitor_);
+				essential_[candidate] = !checker.isGoalDerivable(candidate);
+			}
+		}
+
+	}
+
+}
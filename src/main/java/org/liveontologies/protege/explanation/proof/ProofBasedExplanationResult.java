@@ -26,7 +26,9 @@ import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import javax.swing.JComboBox;
 import javax.swing.JScrollPane;
@@ -34,6 +36,7 @@ import javax.swing.SwingUtilities;
 
 import org.liveontologies.protege.explanation.proof.list.ProofFrame;
 import org.liveontologies.protege.explanation.proof.list.ProofFrameList;
+import org.liveontologies.protege.explanation.proof.preferences.ProofBasedExplPrefs;
 import org.liveontologies.protege.explanation.proof.service.ProofService;
 import org.protege.editor.owl.OWLEditorKit;
 import org.protege.editor.owl.ui.explanation.ExplanationResult;
@@ -48,7 +51,7 @@ import org.semanticweb.owlapi.model.OWLAxiom;
  *
  */
 public class ProofBasedExplanationResult extends ExplanationResult
-		implements ProofManager.ChangeListener {
+		implements ProofManager.ChangeListener, ProofManager.ServiceListener {
 
 	private static final long serialVersionUID = -4072183414834233365L;
 
@@ -62,24 +65,29 @@ public class ProofBasedExplanationResult extends ExplanationResult
 
 	private final JScrollPane scrollPane;
 
+	/**
+	 * the proof services that can provide proofs for the entailment in the
+	 * order in which they were found
+	 */
+	private final List<ProofService> proofServices_ = new ArrayList<ProofService>();
+
+	/**
+	 * displayed when more than one proof service is found
+	 */
+	private JComboBox<ProofService> proofServiceSelector_ = null;
+
+	/**
+	 * offered in {@link #proofServiceSelector_} if enabled in the
+	 * preferences
+	 * 
+	 * @see ProofBasedExplPrefs#mergeProofServices
+	 */
+	private MergedProofService mergedProofService_ = null;
+
 	private ProofBasedExplanationResult(ProofManager proofManager) {
 		setLayout(new BorderLayout());
 		this.proofManager_ = proofManager;
 		this.kit_ = proofManager.getOWLEditorKit();
-
-		Collection<ProofService> proofServices = proofManager_
-				.getServices();
-		switch (proofServices.size()) {
-		case 0:
-			break;
-		case 1:
-			proofManager_.selectService(proofServices.iterator().next());
-			break;
-		default:
-			JComboBox<ProofService> proofServiceSelector = createComboBox(
-					proofServices);
-			add(proofServiceSelector, BorderLayout.NORTH);
-		}
 		proofManager_.addListener(this);
 		frame_ = new ProofFrame(proofManager_, kit_);
 		frameList_ = new ProofFrameList(kit_, frame_);
@@ -87,15 +95,16 @@ public class ProofBasedExplanationResult extends ExplanationResult
 		scrollPane.setHorizontalScrollBarPolicy(
 				JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
 		add(scrollPane, BorderLayout.CENTER);
-
+		// the services are added as they answer
+		proofManager_.findServices(this);
 	}
 
 	public ProofBasedExplanationResult(ProofServiceManager proofServiceMan,
-			ImportsClosureManager importsClosureMan, OWLAxiom entailment) {
-		this(new ProofManager(proofServiceMan,
-				importsClosureMan.getImportsClosure(
-						proofServiceMan.getOWLEditorKit().getModelManager()
-								.getActiveOntology()),
+			ProofCache proofCache, ImportsClosureManager importsClosureMan,
+			OWLAxiom entailment) {
+		this(new ProofManager(proofServiceMan, proofCache, importsClosureMan,
+				proofServiceMan.getOWLEditorKit().getModelManager()
+						.getActiveOntology(),
 				entailment));
 	}
 
@@ -107,16 +116,46 @@ public class ProofBasedExplanationResult extends ExplanationResult
 		proofManager_.dispose();
 	}
 
+	@Override
+	public void proofServiceFound(ProofService service) {
+		proofServices_.add(service);
+		switch (proofServices_.size()) {
+		case 1:
+			proofManager_.selectService(service);
+			break;
+		case 2:
+			List<ProofService> items = new ArrayList<ProofService>(
+					proofServices_);
+			if (ProofBasedExplPrefs.create().load().mergeProofServices) {
+				mergedProofService_ = new MergedProofService(
+						proofManager_.getProofServiceManager(),
+						proofServices_);
+				items.add(mergedProofService_);
+			}
+			proofServiceSelector_ = createComboBox(items);
+			add(proofServiceSelector_, BorderLayout.NORTH);
+			revalidate();
+			break;
+		default:
+			if (mergedProofService_ == null) {
+				proofServiceSelector_.addItem(service);
+			} else {
+				// keep the merged proofs last
+				proofServiceSelector_.insertItemAt(service,
+						proofServices_.size() - 1);
+				mergedProofService_.addService(service);
+			}
+		}
+	}
+
 	private JComboBox<ProofService> createComboBox(
 			Collection<ProofService> proofServices) {
 		final ProofService[] services = proofServices
 				.toArray(new ProofService[proofServices.size()]);
 		final JComboBox<ProofService> selector = new JComboBox<ProofService>(
 				services);
-		if (services.length > 0) {
-			selector.setSelectedItem(services[0]);
-			proofManager_.selectService(services[0]);
-		}
+		// the first service is already selected
+		selector.setSelectedItem(proofManager_.getProofService());
 		selector.addActionListener(new ActionListener() {
 			@Override
 			public void actionPerformed(ActionEvent e) {
@@ -22,7 +22,6 @@ package org.liveontologies.protege.explanation.proof;
  * #L%
  */
 
-import org.liveontologies.protege.explanation.proof.service.ProofService;
 import org.protege.editor.owl.OWLEditorKit;
 import org.protege.editor.owl.ui.explanation.ExplanationResult;
 import org.protege.editor.owl.ui.explanation.ExplanationService;
@@ -41,11 +40,14 @@ public class ProofBasedExplanationService extends ExplanationService {
 
 	private ImportsClosureManager importsClosureMan_;
 
+	private ProofCache proofCache_;
+
 	@Override
 	public void initialise() throws Exception {
 		OWLEditorKit kit = getOWLEditorKit();
 		proofServiceMan_ = ProofServiceManager.get(kit);
 		importsClosureMan_ = ImportsClosureManager.get(kit);
+		proofCache_ = ProofCache.get(kit);
 		KeyEventManager.initialise(kit);
 	}
 
@@ -56,17 +58,12 @@ public class ProofBasedExplanationService extends ExplanationService {
 
 	@Override
 	public boolean hasExplanation(OWLAxiom axiom) {
-		for (ProofService service : proofServiceMan_.getProofServices()) {
-			if (service.hasProof(axiom)) {
-				return true;
-			}
-		}
-		return false;
+		return proofServiceMan_.hasProof(axiom);
 	}
 
 	@Override
 	public ExplanationResult explain(OWLAxiom entailment) {
-		return new ProofBasedExplanationResult(proofServiceMan_,
+		return new ProofBasedExplanationResult(proofServiceMan_, proofCache_,
 				importsClosureMan_, entailment);
 	}
 
@@ -48,6 +48,8 @@ public class ProofBasedInconsistencyExplanationPlugin
 
 	private ImportsClosureManager importsClosureMan_;
 
+	private ProofCache proofCache_;
+
 	@Override
 	public void setup(OWLEditorKit kit) {
 		this.kit_ = kit;
@@ -57,6 +59,7 @@ public class ProofBasedInconsistencyExplanationPlugin
 	public void initialise() throws Exception {
 		proofServiceMan_ = ProofServiceManager.get(kit_);
 		importsClosureMan_ = ImportsClosureManager.get(kit_);
+		proofCache_ = ProofCache.get(kit_);
 		KeyEventManager.initialise(kit_);
 	}
 
@@ -71,7 +74,7 @@ public class ProofBasedInconsistencyExplanationPlugin
 				.getOWLDataFactory();
 
 		final ProofBasedExplanationResult panel = new ProofBasedExplanationResult(
-				proofServiceMan_, importsClosureMan_,
+				proofServiceMan_, proofCache_, importsClosureMan_,
 				factory.getOWLSubClassOfAxiom(factory.getOWLThing(),
 						factory.getOWLNothing()));
 		JOptionPane op = new JOptionPane(panel, JOptionPane.PLAIN_MESSAGE,
@@ -0,0 +1,490 @@
+package org.liveontologies.protege.explanation.proof;
+
+/*-
+ * #%L
+ * Protege Proof-Based Explanation
+ * $Id:$
+ * $HeadURL:$
+ * %%
+ * Copyright (C) 2014 - 2016 Live Ontologies Project
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+import org.liveontologies.protege.explanation.proof.service.ProofService;
+import org.liveontologies.puli.DynamicProof;
+import org.liveontologies.puli.Inference;
+import org.liveontologies.puli.ProofNode;
+import org.protege.editor.core.Disposable;
+import org.protege.editor.owl.OWLEditorKit;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the proofs obtained from {@link ProofService}s together with their
+ * processed roots so that they can be reused when explanations for the same
+ * entailments are requested again. The least recently used entries are
+ * evicted when the number of entries or their total weight (the number of
+ * axioms that were checked for being stated when computing the roots) exceeds
+ * the limits. The proofs are disposed when they are evicted and not used by
+ * any {@link ProofManager}.
+ * 
+ * @see ProofManager
+ */
+public class ProofCache implements Disposable {
+
+	// logger for this class
+	private static final Logger LOGGER_ = LoggerFactory
+			.getLogger(ProofCache.class);
+
+	private static final String KEY_ = "org.liveontologies.protege.explanation.proof.cache";
+
+	/**
+	 * the maximal number of proofs kept in the cache
+	 */
+	private static final int MAX_ENTRIES_ = 64;
+
+	/**
+	 * the maximal total weight of the processed roots kept in the cache
+	 */
+	private static final long MAX_WEIGHT_ = 500000;
+
+	/**
+	 * the cached entries in the order of access
+	 */
+	private final Map<Key, Entry> entries_ = new LinkedHashMap<Key, Entry>(16,
+			0.75f, true);
+
+	/**
+	 * the sum of weights of {@link #entries_}
+	 */
+	private long weight_ = 0;
+
+	private int hits_ = 0, misses_ = 0, evictions_ = 0;
+
+	ProofCache() {
+	}
+
+	public static synchronized ProofCache get(OWLEditorKit editorKit) {
+		// reuse one instance
+		ProofCache c = editorKit.getModelManager().get(KEY_);
+		if (c == null) {
+			c = new ProofCache();
+			editorKit.put(KEY_, c);
+		}
+		return c;
+	}
+
+	/**
+	 * Retrieves the proof for the given entailment from the cache or, if
+	 * there is no such proof in the cache, obtains it using
+	 * {@link ProofService#getProofAsync(OWLAxiom, Executor)} without
+	 * blocking; if the {@link ProofService} streams inferences, the
+	 * {@link Entry} is returned immediately and its proof is extended as the
+	 * inferences arrive. The obtained {@link Entry} should be released using
+	 * {@link #release(Entry)} when it is not used anymore.
+	 * 
+	 * @param service
+	 *            the {@link ProofService} providing the proof
+	 * @param entailment
+	 *            the axiom for which the proof is required
+	 * @param importsClosureRec
+	 *            the imports closure which determines which axioms are stated
+	 * @param executor
+	 *            the {@link Executor} that can be used for obtaining the
+	 *            proof
+	 * @return the future {@link Entry} for the proof of the given entailment
+	 */
+	public CompletableFuture<Entry> acquireAsync(ProofService service,
+			OWLAxiom entailment, ImportsClosureRecord importsClosureRec,
+			Executor executor) {
+		final Key key = new Key(service.getPluginId(), entailment,
+				importsClosureRec);
+		synchronized (this) {
+			Entry entry = entries_.get(key);
+			if (entry != null) {
+				entry.references_++;
+				return CompletableFuture.completedFuture(entry);
+			}
+		}
+		// else
+		if (service.streamsInferences()) {
+			// the inferences are received while the proof is used
+			StreamedProof<Inference<? extends OWLAxiom>> proof = new StreamedProof<Inference<? extends OWLAxiom>>();
+			Entry entry = acquire(key, proof);
+			if (entry.proof_.getDelegate() == proof) {
+				service.streamInferences(entailment, proof, executor);
+			}
+			return CompletableFuture.completedFuture(entry);
+		}
+		// else
+		return service.getProofAsync(entailment, executor).thenApply(
+				new Function<DynamicProof<Inference<? extends OWLAxiom>>, Entry>() {
+					@Override
+					public Entry apply(
+							DynamicProof<Inference<? extends OWLAxiom>> proof) {
+						return acquire(key, proof);
+					}
+				});
+	}
+
+	private synchronized Entry acquire(Key key,
+			DynamicProof<Inference<? extends OWLAxiom>> proof) {
+		Entry entry = entries_.get(key);
+		if (entry == null) {
+			entry = new Entry(key, proof);
+			entries_.put(key, entry);
+			evictIfNeeded();
+		} else if (entry.proof_.getDelegate() != proof) {
+			// the proof was obtained again in the meantime
+			try {
+				proof.dispose();
+			} catch (Throwable e) {
+				LOGGER_.warn("Cannot dispose the proof", e);
+			}
+		}
+		entry.references_++;
+		return entry;
+	}
+
+	/**
+	 * Indicates that the given {@link Entry} obtained by
+	 * {@link #acquireAsync(ProofService, OWLAxiom, ImportsClosureRecord, Executor)}
+	 * is not used anymore
+	 * 
+	 * @param entry
+	 */
+	public synchronized void release(Entry entry) {
+		entry.references_--;
+		if (entry.references_ == 0 && entry.evicted_) {
+			entry.dispose();
+		}
+	}
+
+	/**
+	 * @param entry
+	 * @param statedVersion
+	 *            see {@link ImportsClosureRecord#getVersion()}
+	 * @param removeUnnecessaryInferences
+	 *            whether unnecessary inferences were removed when computing
+	 *            the root
+	 * @return the processed root of the proof stored in the given
+	 *         {@link Entry} for the given parameters or {@code null} if no
+	 *         such root is stored
+	 */
+	public synchronized ProofNode<OWLAxiom> getProofRoot(Entry entry,
+			int statedVersion, boolean removeUnnecessaryInferences) {
+		if (entry.root_ != null && entry.statedVersion_ == statedVersion
+				&& entry.removeUnnecessaryInferences_ == removeUnnecessaryInferences) {
+			hits_++;
+			LOGGER_.debug("{}: proof cache hit; {}", entry.key_.entailment_,
+					this);
+			return entry.root_;
+		}
+		// else
+		misses_++;
+		return null;
+	}
+
+	/**
+	 * @param entry
+	 * @return the stated axioms that were used for computing the root
+	 *         returned by {@link #getProofRoot(Entry, int, boolean)}
+	 */
+	public synchronized MembershipRecordingSet<OWLAxiom> getStatedAxioms(
+			Entry entry) {
+		return entry.stated_;
+	}
+
+	/**
+	 * Stores the processed root of the proof in the given {@link Entry}
+	 * 
+	 * @param entry
+	 * @param root
+	 *            the processed root of the proof stored in the entry
+	 * @param stated
+	 *            the stated axioms used for computing the root
+	 * @param statedVersion
+	 *            see {@link ImportsClosureRecord#getVersion()}
+	 * @param removeUnnecessaryInferences
+	 *            whether unnecessary inferences were removed when computing
+	 *            the root
+	 */
+	public synchronized void putProofRoot(Entry entry, ProofNode<OWLAxiom> root,
+			MembershipRecordingSet<OWLAxiom> stated, int statedVersion,
+			boolean removeUnnecessaryInferences) {
+		if (entry.evicted_) {
+			return;
+		}
+		// else
+		weight_ -= entry.weight_;
+		entry.root_ = root;
+		entry.stated_ = stated;
+		entry.statedVersion_ = statedVersion;
+		entry.removeUnnecessaryInferences_ = removeUnnecessaryInferences;
+		entry.weight_ = stated == null ? 1 : stated.getTestedCount() + 1;
+		weight_ += entry.weight_;
+		evictIfNeeded();
+	}
+
+	/**
+	 * Indicates that the given processed root stored in the given
+	 * {@link Entry} remains valid for the new version of the stated axioms
+	 * 
+	 * @param entry
+	 * @param root
+	 * @param statedVersion
+	 *            see {@link ImportsClosureRecord#getVersion()}
+	 */
+	public synchronized void revalidateProofRoot(Entry entry,
+			ProofNode<OWLAxiom> root, int statedVersion) {
+		if (entry.root_ == root) {
+			entry.statedVersion_ = statedVersion;
+		}
+	}
+
+	/**
+	 * @return the number of times a processed root was found in the cache
+	 */
+	public synchronized int getHitCount() {
+		return hits_;
+	}
+
+	/**
+	 * @return the number of times a processed root was not found in the
+	 *         cache
+	 */
+	public synchronized int getMissCount() {
+		return misses_;
+	}
+
+	/**
+	 * @return the number of entries removed from the cache due to its limits
+	 */
+	public synchronized int getEvictionCount() {
+		return evictions_;
+	}
+
+	/**
+	 * Removes all entries for the given {@link ImportsClosureRecord} from the
+	 * cache; this should be done when the record is discarded since the
+	 * entries keep it reachable
+	 * 
+	 * @param importsClosureRec
+	 */
+	synchronized void purge(ImportsClosureRecord importsClosureRec) {
+		Iterator<Entry> iter = entries_.values().iterator();
+		while (iter.hasNext()) {
+			Entry entry = iter.next();
+			if (entry.key_.importsClosureRec_ == importsClosureRec) {
+				iter.remove();
+				evict(entry);
+			}
+		}
+	}
+
+	private void evictIfNeeded() {
+		Iterator<Entry> iter = entries_.values().iterator();
+		while ((entries_.size() > MAX_ENTRIES_ || weight_ > MAX_WEIGHT_)
+				&& iter.hasNext()) {
+			Entry eldest = iter.next();
+			iter.remove();
+			evict(eldest);
+			evictions_++;
+		}
+	}
+
+	private void evict(Entry entry) {
+		weight_ -= entry.weight_;
+		entry.weight_ = 0;
+		entry.evicted_ = true;
+		if (entry.references_ == 0) {
+			entry.dispose();
+		}
+	}
+
+	@Override
+	public synchronized void dispose() {
+		LOGGER_.debug("disposing {}", this);
+		List<Entry> entries = new ArrayList<Entry>(entries_.values());
+		entries_.clear();
+		for (Entry entry : entries) {
+			evict(entry);
+		}
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format(
+				"proof cache: %d entries, weight %d, %d hits, %d misses, %d evictions",
+				entries_.size(), weight_, hits_, misses_, evictions_);
+	}
+
+	/**
+	 * A proof kept in {@link ProofCache}
+	 */
+	public class Entry implements DynamicProof.ChangeListener {
+
+		private final Key key_;
+
+		/**
+		 * the proof obtained from the {@link ProofService}; its inferences
+		 * are memoized since some services compute them on every request
+		 */
+		private final MemoizingProof<Inference<? extends OWLAxiom>> proof_;
+
+		/**
+		 * the number of {@link ProofManager}s using {@link #proof_}
+		 */
+		private int references_ = 0;
+
+		/**
+		 * {@code true} if this entry was removed from the cache; it should be
+		 * disposed when not referenced anymore
+		 */
+		private boolean evicted_ = false;
+
+		private ProofNode<OWLAxiom> root_ = null;
+
+		private MembershipRecordingSet<OWLAxiom> stated_ = null;
+
+		private int statedVersion_;
+
+		private boolean removeUnnecessaryInferences_;
+
+		private long weight_ = 0;
+
+		Entry(Key key, DynamicProof<Inference<? extends OWLAxiom>> proof) {
+			this.key_ = key;
+			this.proof_ = new MemoizingProof<Inference<? extends OWLAxiom>>(
+					proof);
+			proof_.addListener(this);
+		}
+
+		/**
+		 * @return the proof obtained from the {@link ProofService}; it should
+		 *         not be disposed by the users of this entry
+		 */
+		public DynamicProof<Inference<? extends OWLAxiom>> getProof() {
+			return proof_;
+		}
+
+		/**
+		 * @return {@code false} if the inferences of the proof are still
+		 *         being received from the {@link ProofService}
+		 * 
+		 * @see ProofService#streamsInferences()
+		 */
+		public boolean isProofComplete() {
+			DynamicProof<? extends Inference<? extends OWLAxiom>> proof = proof_
+					.getDelegate();
+			return !(proof instanceof StreamedProof)
+					|| ((StreamedProof<?>) proof).isComplete();
+		}
+
+		/**
+		 * @param inference
+		 *            an inference of the proof
+		 * @return the {@link ProofService} that supplied the given inference
+		 *         if the proof was merged from the proofs of several services,
+		 *         or {@code null} otherwise
+		 * 
+		 * @see MergedProofService
+		 */
+		public ProofService getSource(Inference<?> inference) {
+			DynamicProof<? extends Inference<? extends OWLAxiom>> proof = proof_
+					.getDelegate();
+			if (!(proof instanceof MergedProof)) {
+				return null;
+			}
+			// else
+			Object source = ((MergedProof<?, ?>) proof).getSource(inference);
+			return source instanceof ProofService ? (ProofService) source
+					: null;
+		}
+
+		@Override
+		public void inferencesChanged() {
+			synchronized (ProofCache.this) {
+				// the root needs to be recomputed
+				ProofCache.this.weight_ -= weight_;
+				weight_ = 0;
+				root_ = null;
+				stated_ = null;
+			}
+		}
+
+		void dispose() {
+			root_ = null;
+			stated_ = null;
+			try {
+				proof_.removeListener(this);
+				proof_.dispose();
+			} catch (Throwable e) {
+				LOGGER_.warn("Cannot dispose the proof", e);
+			}
+		}
+
+	}
+
+	private static class Key {
+
+		private final String serviceId_;
+
+		private final OWLAxiom entailment_;
+
+		/**
+		 * compared by identity since the versions of different records for
+		 * the same ontology are not related
+		 */
+		private final ImportsClosureRecord importsClosureRec_;
+
+		Key(String serviceId, OWLAxiom entailment,
+				ImportsClosureRecord importsClosureRec) {
+			this.serviceId_ = serviceId;
+			this.entailment_ = entailment;
+			this.importsClosureRec_ = importsClosureRec;
+		}
+
+		@Override
+		public int hashCode() {
+			return (31 * serviceId_.hashCode() + entailment_.hashCode()) * 31
+					+ System.identityHashCode(importsClosureRec_);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			// else
+			Key other = (Key) o;
+			return serviceId_.equals(other.serviceId_)
+					&& entailment_.equals(other.entailment_)
+					&& importsClosureRec_ == other.importsClosureRec_;
+		}
+
+	}
+
+}
@@ -21,22 +21,36 @@
  */
 package org.liveontologies.protege.explanation.proof;
 
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
+import org.liveontologies.protege.explanation.proof.ProofProcessingMetrics.InstrumentedProof;
+import org.liveontologies.protege.explanation.proof.ProofProcessingMetrics.Stage;
 import org.liveontologies.protege.explanation.proof.preferences.ProofBasedExplPrefs;
 import org.liveontologies.protege.explanation.proof.service.ProofService;
+import org.liveontologies.puli.AbstractProofNode;
+import org.liveontologies.puli.DelegatingProof;
 import org.liveontologies.puli.DynamicProof;
 import org.liveontologies.puli.Inference;
 import org.liveontologies.puli.LeafProofNode;
 import org.liveontologies.puli.Proof;
 import org.liveontologies.puli.ProofNode;
 import org.liveontologies.puli.ProofNodes;
+import org.liveontologies.puli.ProofStep;
 import org.liveontologies.puli.Proofs;
+import org.liveontologies.puli.pinpointing.InterruptMonitor;
 import org.protege.editor.core.Disposable;
 import org.protege.editor.owl.OWLEditorKit;
 import org.semanticweb.owlapi.model.OWLAxiom;
@@ -56,16 +70,42 @@ public class ProofManager implements ImportsClosureRecord.ChangeListener,
 	private static final Logger LOGGER_ = LoggerFactory
 			.getLogger(ProofManager.class);
 
+	/**
+	 * the maximal depth of the nodes of the preliminary proof root that can
+	 * have inferences
+	 * 
+	 * @see #computePreliminaryProofRoot
+	 */
+	private static final int PRELIMINARY_DEPTH_ = 16;
+
+	/**
+	 * the time in milliseconds after which the preliminary proof root is
+	 * displayed if the final root is not computed yet
+	 * 
+	 * @see #computePreliminaryProofRoot
+	 */
+	private static final int PRELIMINARY_DELAY_ = 300;
+
 	/**
 	 * proof services
 	 */
 	private final ProofServiceManager proofServiceMan_;
 
+	/**
+	 * keeps the proofs and their processed roots for reuse
+	 */
+	private final ProofCache proofCache_;
+
 	/**
 	 * the entailement for which the proofs are managed
 	 */
 	private final OWLAxiom entailment_;
 
+	/**
+	 * the manager from which {@link #importsClosureRec_} is acquired
+	 */
+	private final ImportsClosureManager importsClosureMan_;
+
 	/**
 	 * the import closure for the ontology which entails {@link #entailment_}
 	 */
@@ -76,33 +116,110 @@ public class ProofManager implements ImportsClosureRecord.ChangeListener,
 	 */
 	private DynamicProof<Inference<? extends OWLAxiom>> proof_ = null;
 
+	/**
+	 * the entry of {@link #proofCache_} from which {@link #proof_} is taken
+	 */
+	private ProofCache.Entry proofEntry_ = null;
+
 	/**
 	 * an object using which examples of inferences can be obtained; those are
 	 * used in tooltips for inference rows
 	 */
 	private ProofService proofService_ = null;
 
+	/**
+	 * the pending request for the proof from {@link #proofService_} or
+	 * {@code null} if the proof was already obtained
+	 */
+	private CompletableFuture<ProofCache.Entry> proofRequest_ = null;
+
+	/**
+	 * the number of proof services for which it is not yet known whether
+	 * they can provide proofs for {@link #entailment_}
+	 * 
+	 * @see #findServices(ServiceListener)
+	 */
+	private int pendingServiceChecks_ = 0;
+
+	/**
+	 * {@code true} if the proof services did not answer within
+	 * {@link ProofBasedExplPrefs#serviceCheckTimeout}; their answers are not
+	 * awaited anymore, but still taken into account when they arrive
+	 */
+	private boolean serviceChecksTimedOut_ = false;
+
+	/**
+	 * fires when the answers of the proof services are not awaited anymore
+	 */
+	private Timer serviceCheckTimer_ = null;
+
+	/**
+	 * {@code true} if this object should not be used anymore
+	 */
+	private boolean disposed_ = false;
+
 	/**
 	 * the result of applying the transformation (e.g., elimination of cycles)
 	 * to {@link #proof_}; its inferences will be actually displayed
 	 */
 	private ProofNode<OWLAxiom> proofRoot_ = null;
 
+	/**
+	 * the stated axioms used for computing {@link #proofRoot_}; records which
+	 * axioms were checked for being stated so that after changes in the
+	 * ontology it can be checked whether {@link #proofRoot_} is still valid
+	 */
+	private MembershipRecordingSet<OWLAxiom> proofRootStatedAxioms_ = null;
+
+	/**
+	 * the version of the imports closure for which {@link #proofRoot_} is
+	 * known to be valid
+	 * 
+	 * @see ImportsClosureRecord#getVersion()
+	 */
+	private int proofRootStatedVersion_;
+
+	/**
+	 * the measurements recorded during the computation of {@link #proofRoot_}
+	 */
+	private ProofProcessingMetrics proofRootMetrics_ = null;
+
 	/**
 	 * {@code true} if {@link #proofRoot_} is in sync with the proof provided by
 	 * {@link #proofService_}
 	 */
 	private boolean proofRootUpToDate_ = false;
 
+	/**
+	 * the preferences with which {@link #proofRoot_} is computed or
+	 * {@code null} if they should be loaded again
+	 */
+	private ProofBasedExplPrefs prefs_ = null;
+
+	/**
+	 * the computation of {@link #proofRoot_} currently running in the
+	 * background or {@code null} if there is no such computation
+	 */
+	private ProofRootComputation proofRootComputation_ = null;
+
+	/**
+	 * incremented every time {@link #proofRoot_} may become outdated; the
+	 * computations started for a different value are cancelled
+	 */
+	private final AtomicInteger generation_ = new AtomicInteger();
+
 	/**
 	 * the listeners to be notified when {@link #proofRoot_} is updated
 	 */
 	private final List<ChangeListener> listeners_ = new ArrayList<ChangeListener>();
 
-	ProofManager(ProofServiceManager proofServiceMan,
-			ImportsClosureRecord importsClosureRec, OWLAxiom entailment) {
+	ProofManager(ProofServiceManager proofServiceMan, ProofCache proofCache,
+			ImportsClosureManager importsClosureMan, OWLOntology ontology,
+			OWLAxiom entailment) {
 		this.proofServiceMan_ = proofServiceMan;
-		this.importsClosureRec_ = importsClosureRec;
+		this.proofCache_ = proofCache;
+		this.importsClosureMan_ = importsClosureMan;
+		this.importsClosureRec_ = importsClosureMan.acquire(ontology);
 		this.entailment_ = entailment;
 		importsClosureRec_.addListener(this);
 	}
@@ -138,6 +255,36 @@ public class ProofManager implements ImportsClosureRecord.ChangeListener,
 		return proofService_;
 	}
 
+	/**
+	 * @param inference
+	 *            an inference of the proof obtained from the current proof
+	 *            service
+	 * @return the example for the given inference provided by the service
+	 *         that supplied this inference, or {@code null} if no example is
+	 *         provided
+	 * 
+	 * @see ProofService#getExample(Inference)
+	 * @see ProofCache.Entry#getSource(Inference)
+	 */
+	public Inference<? extends OWLAxiom> getExample(
+			Inference<? extends OWLAxiom> inference) {
+		ProofService service;
+		synchronized (this) {
+			service = proofService_;
+			if (proofEntry_ != null) {
+				ProofService source = proofEntry_.getSource(inference);
+				if (source != null) {
+					service = source;
+				}
+			}
+		}
+		if (service == null) {
+			return null;
+		}
+		// else
+		return proofServiceMan_.getExample(service, inference);
+	}
+
 	/**
 	 * Sets the object from which the proofs for entailment are obtained
 	 * 
@@ -149,53 +296,395 @@ public class ProofManager implements ImportsClosureRecord.ChangeListener,
 	 */
 	public synchronized void selectService(ProofService proofService) {
 		proofService_ = proofService;
-		if (proof_ != null) {
-			proof_.removeListener(this);
-			proof_.dispose();
-		}
-		proof_ = proofService.getProof(entailment_);
-		proof_.addListener(this);
+		releaseProof();
+		final CompletableFuture<ProofCache.Entry> request = proofCache_
+				.acquireAsync(proofService, entailment_, importsClosureRec_,
+						proofServiceMan_.getExecutor(proofService));
+		proofRequest_ = request;
 		invalidateProofRoot();
+		request.whenComplete(new BiConsumer<ProofCache.Entry, Throwable>() {
+			@Override
+			public void accept(final ProofCache.Entry entry,
+					final Throwable error) {
+				invokeInEventDispatchThread(new Runnable() {
+					@Override
+					public void run() {
+						finishProofRequest(request, entry, error);
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * Uses the proof obtained by the given request unless another proof
+	 * service was selected in the meantime
+	 * 
+	 * @param request
+	 * @param entry
+	 *            the result of the request or {@code null} if it has failed
+	 * @param error
+	 *            the reason why the request has failed
+	 */
+	private synchronized void finishProofRequest(
+			CompletableFuture<ProofCache.Entry> request, ProofCache.Entry entry,
+			Throwable error) {
+		if (request != proofRequest_) {
+			// outdated
+			if (entry != null) {
+				proofCache_.release(entry);
+			}
+			return;
+		}
+		// else
+		proofRequest_ = null;
+		if (entry == null) {
+			LOGGER_.warn("{}: cannot obtain the proof from {}", entailment_,
+					proofService_, error);
+		} else {
+			proofEntry_ = entry;
+			proof_ = entry.getProof();
+			proof_.addListener(this);
+		}
+		if (!invalidateProofRoot()) {
+			fireProofRootChanged();
+		}
+	}
+
+	/**
+	 * @return {@code true} if the proof for the entailment is not yet
+	 *         obtained from the proof services
+	 */
+	private boolean isWaitingForProof() {
+		return proofRequest_ != null || (proofService_ == null
+				&& pendingServiceChecks_ > 0 && !serviceChecksTimedOut_);
 	}
 
 	/**
 	 * @return the root of the proof for the entailment obtained from the
-	 *         current proof service
+	 *         current proof service; if the proof is obtained or computed in
+	 *         the background, {@code null} is returned until the computation is
+	 *         finished, after which the listeners are notified
 	 * 
 	 * @see #getEntailment()
 	 * @see #selectService(ProofService)
+	 * @see #isProofRootComputing()
+	 * @see ChangeListener#proofRootChanged()
 	 */
 	public synchronized ProofNode<OWLAxiom> getProofRoot() {
-		if (!proofRootUpToDate_) {
+		if (isWaitingForProof()) {
+			return null;
+		}
+		// else
+		if (!proofRootUpToDate_ && proofRootComputation_ == null) {
+			// the cache is checked once after every invalidation
+			ProofBasedExplPrefs prefs = getPrefs();
+			int statedVersion = importsClosureRec_.getVersion();
+			ProofNode<OWLAxiom> cachedRoot = proofEntry_ == null ? null
+					: proofCache_.getProofRoot(proofEntry_, statedVersion,
+							prefs.removeUnnecessaryInferences);
 			if (proof_ == null) {
 				proofRoot_ = new LeafProofNode<OWLAxiom>(entailment_);
+				proofRootUpToDate_ = true;
+			} else if (cachedRoot != null) {
+				proofRoot_ = cachedRoot;
+				proofRootMetrics_ = null;
+				proofRootStatedAxioms_ = proofCache_
+						.getStatedAxioms(proofEntry_);
+				proofRootStatedVersion_ = statedVersion;
+				proofRootUpToDate_ = true;
+			} else if (prefs.computeProofsInBackground) {
+				proofRootComputation_ = new ProofRootComputation(proof_,
+						proofService_, prefs.removeUnnecessaryInferences,
+						prefs.removeUnnecessaryInferencesInParallel,
+						prefs.showProofsProgressively, generation_.get());
+				proofServiceMan_.getExecutor().execute(proofRootComputation_);
 			} else {
-				Set<OWLAxiom> stated = importsClosureRec_
-						.getStatedAxiomsWithoutAnnotations();
-				boolean removeUnnecessaryInferences = ProofBasedExplPrefs
-						.create().load().removeUnnecessaryInferences;
-				// restrict the proof to the current asserted axioms
-				Proof<Inference<? extends OWLAxiom>> processedProof = Proofs
-						.removeAssertedInferences(proof_, stated);
-				if (removeUnnecessaryInferences) {
-					processedProof = Proofs.prune(processedProof, entailment_);
-				}
-				proofRoot_ = ProofNodes.create(processedProof, entailment_);
-				proofRoot_ = ProofNodes
-						.eliminateNotDerivableAndCycles(proofRoot_);
-				if (proofService_ != null && proofRoot_ != null) {
-					proofRoot_ = proofService_.postProcess(proofRoot_);
-				}
-				if (proofRoot_ != null) {
-					proofRoot_ = ProofNodes
-							.removeAssertedInferences(proofRoot_);
-				}
+				proofRootMetrics_ = new ProofProcessingMetrics();
+				proofRootStatedAxioms_ = new MembershipRecordingSet<OWLAxiom>(
+						importsClosureRec_.getStatedAxiomsWithoutAnnotations());
+				proofRoot_ = computeProofRoot(proof_, proofService_,
+						proofRootStatedAxioms_,
+						prefs.removeUnnecessaryInferences,
+						prefs.removeUnnecessaryInferencesInParallel,
+						InterruptMonitor.DUMMY, proofRootMetrics_);
+				proofRootStatedVersion_ = statedVersion;
+				proofRootUpToDate_ = true;
+				proofCache_.putProofRoot(proofEntry_, proofRoot_,
+						proofRootStatedAxioms_, statedVersion,
+						prefs.removeUnnecessaryInferences);
 			}
-			proofRootUpToDate_ = true;
 		}
 		return proofRoot_;
 	}
 
+	/**
+	 * @return {@code true} if the root of the proof is currently computed in
+	 *         the background or the inferences of the proof are still being
+	 *         received; the listeners are notified when the computation is
+	 *         finished
+	 * 
+	 * @see #getProofRoot()
+	 */
+	public synchronized boolean isProofRootComputing() {
+		return proofRootComputation_ != null || isWaitingForProof()
+				|| (proofEntry_ != null && !proofEntry_.isProofComplete());
+	}
+
+	/**
+	 * @return the time and the numbers of inferences recorded for the stages
+	 *         of the computation of the current proof root or {@code null}
+	 *         if the proof root was not computed by this object, e.g., if it
+	 *         was taken from the {@link ProofCache}
+	 * 
+	 * @see #getProofRoot()
+	 */
+	public synchronized ProofProcessingMetrics getProofRootMetrics() {
+		return proofRootMetrics_;
+	}
+
+	/**
+	 * Applies the transformations, such as elimination of cycles, to the
+	 * inferences of the given proof so that they can be displayed
+	 * 
+	 * @param proof
+	 *            the inferences proving {@link #entailment_}
+	 * @param proofService
+	 *            the {@link ProofService} from which the proof was obtained
+	 * @param stated
+	 *            the axioms (without annotations) that are currently stated
+	 *            in the imports closure
+	 * @param removeUnnecessaryInferences
+	 *            see {@link ProofBasedExplPrefs#removeUnnecessaryInferences}
+	 * @param inParallel
+	 *            if {@code true}, unnecessary inferences are found using
+	 *            {@link ParallelProofs}
+	 * @param monitor
+	 *            checked after every stage and during the stages that
+	 *            traverse the proof; when it reports interruption, the
+	 *            computation is stopped
+	 * @param metrics
+	 *            the object in which the time and the numbers of inferences
+	 *            for the stages of the computation are recorded
+	 * @return the root of the transformed proof or {@code null} if
+	 *         {@link #entailment_} is not derivable
+	 * @throws CancellationException
+	 *             if the computation was stopped by the monitor
+	 */
+	private ProofNode<OWLAxiom> computeProofRoot(
+			Proof<Inference<? extends OWLAxiom>> proof,
+			ProofService proofService, Set<OWLAxiom> stated,
+			boolean removeUnnecessaryInferences, boolean inParallel,
+			InterruptMonitor monitor,
+			ProofProcessingMetrics metrics) throws CancellationException {
+		CancellableProofs.checkCancelled(monitor);
+		InstrumentedProof<Inference<? extends OWLAxiom>> instrumented = metrics
+				.instrument(proof);
+		// restrict the proof to the current asserted axioms
+		Proof<Inference<? extends OWLAxiom>> processedProof = Proofs
+				.removeAssertedInferences(
+						CancellableProofs.cancellable(instrumented, monitor),
+						stated);
+		if (removeUnnecessaryInferences) {
+			long start = System.nanoTime(), startNanos = instrumented.getNanos();
+			Proof<Inference<? extends OWLAxiom>> prunedProof = inParallel
+					? ParallelProofs.prune(processedProof, entailment_, monitor)
+					: CancellableProofs.prune(processedProof, entailment_,
+							monitor);
+			long time = instrumented.getExclusiveNanos(start, startNanos);
+			if (LOGGER_.isDebugEnabled()) {
+				metrics.record(Stage.PRUNE, time,
+						Proofs.countInferences(processedProof, entailment_),
+						Proofs.countInferences(prunedProof, entailment_));
+			} else {
+				metrics.record(Stage.PRUNE, time,
+						ProofProcessingMetrics.UNKNOWN,
+						ProofProcessingMetrics.UNKNOWN);
+			}
+			processedProof = prunedProof;
+		}
+		long start = System.nanoTime(), startNanos = instrumented.getNanos();
+		int input = processedProof.getInferences(entailment_).size();
+		// the nodes for the same subproofs are shared
+		ProofNode<OWLAxiom> result = SharedProofNodes.create(processedProof,
+				entailment_, monitor);
+		int output = result == null ? 0 : result.getInferences().size();
+		metrics.record(Stage.ELIMINATE_CYCLES,
+				instrumented.getExclusiveNanos(start, startNanos), input,
+				output);
+		CancellableProofs.checkCancelled(monitor);
+		if (proofService != null && result != null) {
+			start = System.nanoTime();
+			startNanos = instrumented.getNanos();
+			input = output;
+			result = proofServiceMan_.postProcess(proofService, result);
+			output = result == null ? 0 : result.getInferences().size();
+			metrics.record(Stage.POST_PROCESS,
+					instrumented.getExclusiveNanos(start, startNanos), input,
+					output);
+			CancellableProofs.checkCancelled(monitor);
+		}
+		if (result != null) {
+			result = ProofNodes.removeAssertedInferences(result);
+		}
+		metrics.record(instrumented);
+		LOGGER_.debug("{}: proof processed; {}", entailment_, metrics);
+		return result;
+	}
+
+	/**
+	 * Creates the root whose inferences are retrieved from the given proof
+	 * only when requested, e.g., when the conclusions are expanded in the
+	 * user interface; the result can be displayed immediately while
+	 * {@link #computeProofRoot} is running. Unlike in the final root, the
+	 * inferences are not checked for derivability and the proof service does
+	 * not post-process them; only the inferences that use the conclusions on
+	 * the path from the root are removed. The nodes deeper than
+	 * {@value #PRELIMINARY_DEPTH_} and the nodes of outdated computations
+	 * have no inferences.
+	 * 
+	 * @param proof
+	 *            the inferences proving {@link #entailment_}
+	 * @param stated
+	 *            the axioms (without annotations) that are currently stated
+	 *            in the imports closure
+	 * @param computation
+	 *            the computation of the final root
+	 * @return the root of the transformed proof
+	 */
+	private ProofNode<OWLAxiom> computePreliminaryProofRoot(
+			Proof<Inference<? extends OWLAxiom>> proof, Set<OWLAxiom> stated,
+			ProofRootComputation computation) {
+		return ProofNodes.removeAssertedInferences(new PreliminaryProofNode(
+				Proofs.removeAssertedInferences(proof, stated), entailment_,
+				null, computation));
+	}
+
+	/**
+	 * Displays the given preliminary result of the given computation until
+	 * the computation is finished
+	 * 
+	 * @param computation
+	 * @param root
+	 * 
+	 * @see #computePreliminaryProofRoot
+	 */
+	private synchronized void publishPreliminaryProofRoot(
+			ProofRootComputation computation, ProofNode<OWLAxiom> root) {
+		if (proofRootComputation_ != computation || !isCurrent(computation)) {
+			// outdated or already finished
+			return;
+		}
+		// else
+		proofRoot_ = root;
+		fireProofRootChanged();
+	}
+
+	/**
+	 * Sets the result of the given computation as the new
+	 * {@link #proofRoot_} unless the computation is already outdated
+	 * 
+	 * @param computation
+	 * @param root
+	 *            the result of the computation
+	 * @param stated
+	 *            the stated axioms used in the computation or {@code null} if
+	 *            the result should not be reused after changes in the
+	 *            ontology
+	 * @param statedVersion
+	 *            the version of the imports closure for which the stated
+	 *            axioms were obtained
+	 * 
+	 * @param metrics
+	 *            the measurements recorded during the computation
+	 * 
+	 * @see ImportsClosureRecord#getVersion()
+	 */
+	private synchronized void publishProofRoot(
+			ProofRootComputation computation, ProofNode<OWLAxiom> root,
+			MembershipRecordingSet<OWLAxiom> stated, int statedVersion,
+			ProofProcessingMetrics metrics) {
+		if (!isCurrent(computation)) {
+			// outdated
+			return;
+		}
+		// else
+		proofRootComputation_ = null;
+		proofRoot_ = root;
+		proofRootStatedAxioms_ = stated;
+		proofRootStatedVersion_ = statedVersion;
+		proofRootMetrics_ = metrics;
+		proofRootUpToDate_ = true;
+		if (stated != null) {
+			proofCache_.putProofRoot(proofEntry_, root, stated, statedVersion,
+					computation.inputRemoveUnnecessaryInferences_);
+		}
+		fireProofRootChanged();
+	}
+
+	/**
+	 * Checks if {@link #proofRoot_} can be still used after the change in the
+	 * stated axioms. Only the axioms that were checked for being stated
+	 * during the computation of {@link #proofRoot_} are tested again, which is
+	 * usually much faster than computing {@link #proofRoot_} from scratch. If
+	 * none of them has changed, {@link #proofRoot_} is kept, otherwise it is
+	 * invalidated. In either case, the listeners are notified since the
+	 * ontologies in which the axioms occur might have changed.
+	 */
+	private synchronized void revalidateProofRoot() {
+		final MembershipRecordingSet<OWLAxiom> stated = proofRootStatedAxioms_;
+		if (!proofRootUpToDate_ || stated == null) {
+			invalidateProofRoot();
+			return;
+		}
+		// else
+		final int generation = generation_.get();
+		final int statedVersion = importsClosureRec_.getVersion();
+		Runnable validation = new Runnable() {
+			@Override
+			public void run() {
+				boolean valid = false;
+				try {
+					valid = stated.agreesWith(importsClosureRec_
+							.getStatedAxiomsWithoutAnnotations());
+				} catch (Throwable e) {
+					LOGGER_.warn("Cannot validate the proof", e);
+				}
+				final boolean result = valid;
+				SwingUtilities.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						finishRevalidation(generation, statedVersion, result);
+					}
+				});
+			}
+		};
+		if (getPrefs().computeProofsInBackground) {
+			proofServiceMan_.getExecutor().execute(validation);
+		} else {
+			validation.run();
+		}
+	}
+
+	private synchronized void finishRevalidation(int generation,
+			int statedVersion, boolean valid) {
+		if (generation != generation_.get()) {
+			// another change happened; it will be processed separately
+			return;
+		}
+		// else
+		if (valid) {
+			LOGGER_.debug("{}: proof reused after changes of {} axioms",
+					entailment_, proofRootStatedAxioms_.getTestedCount());
+			proofRootStatedVersion_ = statedVersion;
+			proofCache_.revalidateProofRoot(proofEntry_, proofRoot_,
+					statedVersion);
+			fireProofRootChanged();
+		} else {
+			invalidateProofRoot();
+		}
+	}
+
 	public synchronized void addListener(ChangeListener listener) {
 		listeners_.add(listener);
 	}
@@ -234,37 +723,206 @@ public class ProofManager implements ImportsClosureRecord.ChangeListener,
 	}
 
 	/**
-	 * @return the proof services that can provide proofs for the managed
-	 *         entailment
+	 * Checks which proof services can provide proofs for the managed
+	 * entailment without blocking; the services are checked concurrently
+	 * using {@link ProofServiceManager#hasProofAsync(ProofService, OWLAxiom)}
+	 * so that the answers are shared with other windows. Until
+	 * some service is selected, the proof root is reported as being computed
+	 * while some of the checks are not finished, but at most for
+	 * {@link ProofBasedExplPrefs#serviceCheckTimeout} milliseconds; the
+	 * services that answer later are still reported to the listener.
+	 * 
+	 * @param listener
+	 *            notified in the event dispatch thread about every service
+	 *            that can provide proofs, in the order of answers
 	 * 
 	 * @see #getEntailment()
+	 * @see #selectService(ProofService)
 	 */
-	public Collection<ProofService> getServices() {
-		List<ProofService> result = new ArrayList<ProofService>();
-		for (ProofService service : proofServiceMan_.getProofServices()) {
-			if (service.hasProof(entailment_)) {
-				result.add(service);
+	public synchronized void findServices(final ServiceListener listener) {
+		Collection<ProofService> services = proofServiceMan_
+				.getProofServices(entailment_.getAxiomType());
+		pendingServiceChecks_ += services.size();
+		if (serviceCheckTimer_ == null) {
+			serviceCheckTimer_ = new Timer(
+					ProofBasedExplPrefs.create().load().serviceCheckTimeout,
+					new ActionListener() {
+						@Override
+						public void actionPerformed(ActionEvent e) {
+							serviceChecksTimedOut();
+						}
+					});
+			serviceCheckTimer_.setRepeats(false);
+			serviceCheckTimer_.start();
+		}
+		for (final ProofService service : services) {
+			proofServiceMan_.hasProofAsync(service, entailment_)
+					.whenComplete(new BiConsumer<Boolean, Throwable>() {
+						@Override
+						public void accept(final Boolean hasProof,
+								final Throwable error) {
+							invokeInEventDispatchThread(new Runnable() {
+								@Override
+								public void run() {
+									finishServiceCheck(service,
+											Boolean.TRUE.equals(hasProof),
+											error, listener);
+								}
+							});
+						}
+					});
+		}
+	}
+
+	private void finishServiceCheck(ProofService service, boolean hasProof,
+			Throwable error, ServiceListener listener) {
+		boolean noneFound;
+		synchronized (this) {
+			if (disposed_) {
+				return;
 			}
+			// else
+			pendingServiceChecks_--;
+			noneFound = proofService_ == null && pendingServiceChecks_ == 0;
+		}
+		if (error != null) {
+			LOGGER_.warn("{}: cannot check if {} provides the proof",
+					entailment_, service, error);
+		}
+		if (hasProof) {
+			listener.proofServiceFound(service);
+		} else if (noneFound) {
+			// not waiting for the proof anymore
+			fireProofRootChanged();
+		}
+	}
+
+	private void serviceChecksTimedOut() {
+		int pending;
+		synchronized (this) {
+			if (disposed_ || proofService_ != null
+					|| pendingServiceChecks_ == 0) {
+				return;
+			}
+			// else
+			serviceChecksTimedOut_ = true;
+			pending = pendingServiceChecks_;
+		}
+		LOGGER_.debug("{}: {} proof services did not answer in time",
+				entailment_, pending);
+		// not waiting for the proof anymore
+		fireProofRootChanged();
+	}
+
+	private static void invokeInEventDispatchThread(Runnable runnable) {
+		if (SwingUtilities.isEventDispatchThread()) {
+			runnable.run();
+		} else {
+			SwingUtilities.invokeLater(runnable);
 		}
-		return result;
 	}
 
 	@Override
-	public void dispose() {
+	public synchronized void dispose() {
+		disposed_ = true;
+		if (serviceCheckTimer_ != null) {
+			serviceCheckTimer_.stop();
+		}
+		generation_.incrementAndGet();
+		proofRootComputation_ = null;
 		importsClosureRec_.removeListener(this);
+		importsClosureMan_.release(importsClosureRec_);
+		releaseProof();
+	}
+
+	private void releaseProof() {
+		// the pending request is released when finished
+		proofRequest_ = null;
 		if (proof_ != null) {
 			proof_.removeListener(this);
-			proof_.dispose();
+			proof_ = null;
+		}
+		if (proofEntry_ != null) {
+			proofCache_.release(proofEntry_);
+			proofEntry_ = null;
 		}
 	}
 
 	@Override
-	public void statedAxiomsChanged() {
-		invalidateProofRootLater();
+	public synchronized void statedAxiomsChanged(Set<OWLAxiom> added,
+			Set<OWLAxiom> removed, int version) {
+		if (!proofRootUpToDate_ || !remainsValid(proofRootStatedAxioms_,
+				proofRootStatedVersion_, added, removed, version)) {
+			// stop the running computations immediately
+			generation_.incrementAndGet();
+			SwingUtilities.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					revalidateProofRoot();
+				}
+			});
+			return;
+		}
+		// else
+		if (version <= proofRootStatedVersion_) {
+			// the change was already taken into account
+			return;
+		}
+		// else
+		LOGGER_.debug("{}: proof unaffected by changes of {} axioms",
+				entailment_, added.size() + removed.size());
+		proofRootStatedVersion_ = version;
+		proofCache_.revalidateProofRoot(proofEntry_, proofRoot_, version);
+		// the ontologies in which the axioms occur might have changed
+		fireProofRootChanged();
+	}
+
+	/**
+	 * @param stated
+	 *            the stated axioms used for computing a proof root or
+	 *            {@code null} if they were not recorded
+	 * @param statedVersion
+	 *            the version of the stated axioms used for computing the
+	 *            proof root
+	 * @param added
+	 * @param removed
+	 *            the axioms reported by
+	 *            {@link #statedAxiomsChanged(Set, Set, int)}
+	 * @param version
+	 *            the version of the stated axioms after the change
+	 * @return {@code true} if the proof root remains valid for the given
+	 *         version, i.e., the change was already taken into account or
+	 *         it immediately follows the version of the proof root and does
+	 *         not affect the recorded stated axioms; if some version was
+	 *         skipped, the changes in between are not known
+	 */
+	static boolean remainsValid(MembershipRecordingSet<?> stated,
+			int statedVersion, Set<?> added, Set<?> removed, int version) {
+		if (version <= statedVersion) {
+			return true;
+		}
+		// else
+		return stated != null && version == statedVersion + 1
+				&& !stated.isAffectedBy(added)
+				&& !stated.isAffectedBy(removed);
+	}
+
+	@Override
+	public void importsClosureChanged() {
+		// stop the running computations immediately
+		generation_.incrementAndGet();
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				revalidateProofRoot();
+			}
+		});
 	}
 
 	@Override
 	public void inferencesChanged() {
+		// stop the running computations immediately
+		generation_.incrementAndGet();
 		invalidateProofRootLater();
 	}
 
@@ -278,12 +936,39 @@ public class ProofManager implements ImportsClosureRecord.ChangeListener,
 	}
 
 	private synchronized boolean invalidateProofRoot() {
-		if (!proofRootUpToDate_) {
+		generation_.incrementAndGet();
+		// the preferences could have changed
+		prefs_ = null;
+		boolean wasComputing = proofRootComputation_ != null;
+		proofRootComputation_ = null;
+		if (!proofRootUpToDate_ && !wasComputing) {
 			return false;
 		}
 		// else
 		proofRootUpToDate_ = false;
 		proofRoot_ = null;
+		proofRootStatedAxioms_ = null;
+		proofRootMetrics_ = null;
+		fireProofRootChanged();
+		return true;
+	}
+
+	/**
+	 * @return the preferences used for computing {@link #proofRoot_}; they
+	 *         are loaded once after every invalidation of {@link #proofRoot_}
+	 */
+	private ProofBasedExplPrefs getPrefs() {
+		if (prefs_ == null) {
+			prefs_ = ProofBasedExplPrefs.create().load();
+		}
+		return prefs_;
+	}
+
+	private boolean isCurrent(ProofRootComputation computation) {
+		return computation.stamp_ == generation_.get();
+	}
+
+	private synchronized void fireProofRootChanged() {
 		int i = 0;
 		try {
 			for (; i < listeners_.size(); i++) {
@@ -293,7 +978,210 @@ public class ProofManager implements ImportsClosureRecord.ChangeListener,
 			LOGGER_.warn("Remove the listener due to an exception", e);
 			removeListener(listeners_.get(i));
 		}
-		return true;
+	}
+
+	/**
+	 * Computes {@link #proofRoot_} in the background and publishes the result
+	 * in the event dispatch thread. The computation is cancelled as soon as
+	 * {@link #generation_} changes.
+	 */
+	private class ProofRootComputation implements Runnable, InterruptMonitor {
+
+		private final Proof<Inference<? extends OWLAxiom>> inputProof_;
+
+		private final ProofService inputService_;
+
+		private final boolean inputRemoveUnnecessaryInferences_,
+				inputInParallel_, inputProgressive_;
+
+		/**
+		 * the value of {@link ProofManager#generation_} for which the
+		 * computation was started
+		 */
+		private final int stamp_;
+
+		/**
+		 * {@code true} if the proof root is computed; after that the
+		 * computation cannot be interrupted anymore since the (lazily
+		 * evaluated) result may be used for displaying
+		 */
+		private volatile boolean finished_ = false;
+
+		ProofRootComputation(Proof<Inference<? extends OWLAxiom>> proof,
+				ProofService proofService, boolean removeUnnecessaryInferences,
+				boolean inParallel, boolean progressive, int generation) {
+			// the proof can be also used for displaying the preliminary root
+			this.inputProof_ = progressive ? new SynchronizedProof(proof)
+					: proof;
+			this.inputService_ = proofService;
+			this.inputRemoveUnnecessaryInferences_ = removeUnnecessaryInferences;
+			this.inputInParallel_ = inParallel;
+			this.inputProgressive_ = progressive;
+			this.stamp_ = generation;
+		}
+
+		@Override
+		public boolean isInterrupted() {
+			return !finished_ && !isCurrent(this);
+		}
+
+		@Override
+		public void run() {
+			ProofNode<OWLAxiom> root = null;
+			MembershipRecordingSet<OWLAxiom> stated = null;
+			final ProofProcessingMetrics metrics = new ProofProcessingMetrics();
+			final int statedVersion = importsClosureRec_.getVersion();
+			try {
+				stated = new MembershipRecordingSet<OWLAxiom>(importsClosureRec_
+						.getStatedAxiomsWithoutAnnotations());
+				if (inputProgressive_) {
+					// the membership tests for displaying are not recorded
+					final ProofNode<OWLAxiom> preliminary = computePreliminaryProofRoot(
+							inputProof_,
+							importsClosureRec_
+									.getStatedAxiomsWithoutAnnotations(),
+							this);
+					// not displayed if the final root is computed fast
+					Timer timer = new Timer(PRELIMINARY_DELAY_,
+							new ActionListener() {
+								@Override
+								public void actionPerformed(ActionEvent e) {
+									publishPreliminaryProofRoot(
+											ProofRootComputation.this,
+											preliminary);
+								}
+							});
+					timer.setRepeats(false);
+					timer.start();
+				}
+				root = computeProofRoot(inputProof_, inputService_, stated,
+						inputRemoveUnnecessaryInferences_, inputInParallel_, this,
+						metrics);
+			} catch (CancellationException e) {
+				LOGGER_.debug("{}: outdated proof computation cancelled",
+						entailment_);
+				return;
+			} catch (Throwable e) {
+				if (isCurrent(this)) {
+					LOGGER_.error("Cannot compute the proof for {}",
+							entailment_, e);
+				} else {
+					// the proof could have been changed or disposed
+					LOGGER_.debug("Outdated computation failed", e);
+				}
+				// the result cannot be reused
+				stated = null;
+			}
+			finished_ = true;
+			final ProofNode<OWLAxiom> result = root;
+			final MembershipRecordingSet<OWLAxiom> resultStated = stated;
+			SwingUtilities.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					publishProofRoot(ProofRootComputation.this, result,
+							resultStated, statedVersion, metrics);
+				}
+			});
+		}
+
+	}
+
+	/**
+	 * A node of the root computed by {@link #computePreliminaryProofRoot}
+	 */
+	private class PreliminaryProofNode extends AbstractProofNode<OWLAxiom> {
+
+		private final Proof<? extends Inference<? extends OWLAxiom>> proof_;
+
+		/**
+		 * the node whose inference has this node as a premise or
+		 * {@code null} for the root
+		 */
+		private final PreliminaryProofNode parent_;
+
+		private final int depth_;
+
+		private final ProofRootComputation computation_;
+
+		private Collection<ProofStep<OWLAxiom>> steps_ = null;
+
+		PreliminaryProofNode(
+				Proof<? extends Inference<? extends OWLAxiom>> proof,
+				OWLAxiom member, PreliminaryProofNode parent,
+				ProofRootComputation computation) {
+			super(member);
+			this.proof_ = proof;
+			this.parent_ = parent;
+			this.depth_ = parent == null ? 0 : parent.depth_ + 1;
+			this.computation_ = computation;
+		}
+
+		@Override
+		public synchronized Collection<? extends ProofStep<OWLAxiom>> getInferences() {
+			if (steps_ != null) {
+				return steps_;
+			}
+			// else
+			if (depth_ >= PRELIMINARY_DEPTH_ || !isCurrent(computation_)) {
+				return Collections.emptyList();
+			}
+			// else
+			List<ProofStep<OWLAxiom>> steps = new ArrayList<ProofStep<OWLAxiom>>();
+			inferences: for (Inference<? extends OWLAxiom> inf : proof_
+					.getInferences(getMember())) {
+				List<PreliminaryProofNode> premises = new ArrayList<PreliminaryProofNode>(
+						inf.getPremises().size());
+				for (OWLAxiom premise : inf.getPremises()) {
+					if (isOnPath(premise)) {
+						continue inferences;
+					}
+					// else
+					premises.add(new PreliminaryProofNode(proof_, premise,
+							this, computation_));
+				}
+				steps.add(new SharedProofNodes.SharedProofStep<OWLAxiom>(inf,
+						this, premises));
+			}
+			steps_ = Collections.unmodifiableList(steps);
+			return steps_;
+		}
+
+		/**
+		 * @param member
+		 * @return {@code true} if the given member belongs to this node or
+		 *         the nodes on the path from the root
+		 */
+		private boolean isOnPath(OWLAxiom member) {
+			for (PreliminaryProofNode node = this; node != null; node = node.parent_) {
+				if (node.getMember().equals(member)) {
+					return true;
+				}
+			}
+			// else
+			return false;
+		}
+
+	}
+
+	/**
+	 * A {@link Proof} whose inferences can be requested from several threads
+	 * even if the underlying {@link Proof} is not thread-safe
+	 */
+	private static class SynchronizedProof extends
+			DelegatingProof<Inference<? extends OWLAxiom>, Proof<Inference<? extends OWLAxiom>>> {
+
+		SynchronizedProof(Proof<Inference<? extends OWLAxiom>> delegate) {
+			super(delegate);
+		}
+
+		@Override
+		public Collection<? extends Inference<? extends OWLAxiom>> getInferences(
+				Object conclusion) {
+			synchronized (getDelegate()) {
+				return super.getInferences(conclusion);
+			}
+		}
+
 	}
 
 	public interface ChangeListener {
@@ -304,4 +1192,16 @@ public class ProofManager implements ImportsClosureRecord.ChangeListener,
 		void proofRootChanged();
 	}
 
+	public interface ServiceListener {
+		/**
+		 * fired when it is found that the given {@link ProofService} can
+		 * provide proofs for the managed entailment
+		 * 
+		 * @param service
+		 * 
+		 * @see ProofManager#findServices(ServiceListener)
+		 */
+		void proofServiceFound(ProofService service);
+	}
+
 }
@@ -0,0 +1,252 @@
+package org.liveontologies.protege.explanation.proof;
+
+/*-
+ * #%L
+ * Protege Proof-Based Explanation
+ * $Id:$
+ * $HeadURL:$
+ * %%
+ * Copyright (C) 2014 - 2016 Live Ontologies Project
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.liveontologies.puli.DelegatingProof;
+import org.liveontologies.puli.Inference;
+import org.liveontologies.puli.Proof;
+
+/**
+ * Records how much time was spent in the stages of processing of a proof
+ * before it can be displayed and how many inferences each stage received and
+ * produced. Since most transformations of proofs are computed lazily, the
+ * time of a stage includes only the computations performed before the root
+ * of the processed proof is displayed; the time in which the inferences are
+ * obtained from the proof service during these computations is not included
+ * in the time of the stage but accounted separately in
+ * {@link Stage#INFERENCES}.
+ * 
+ * @see ProofManager#getProofRootMetrics()
+ */
+public class ProofProcessingMetrics {
+
+	/**
+	 * the value returned for the numbers of inferences that were not recorded
+	 */
+	public static final int UNKNOWN = -1;
+
+	public enum Stage {
+
+		/**
+		 * obtaining the inferences from the proof service; the input is the
+		 * number of requests for inferences, the output is the number of
+		 * obtained inferences
+		 */
+		INFERENCES("inferences"),
+
+		/**
+		 * removing unnecessary inferences; the inputs and outputs are the
+		 * numbers of inferences used in the proofs of the entailment, which
+		 * are counted only if debugging is enabled
+		 */
+		PRUNE("prune"),
+
+		/**
+		 * elimination of not derivable conclusions and cycles; the inputs
+		 * and outputs are the numbers of inferences of the root
+		 */
+		ELIMINATE_CYCLES("eliminate cycles"),
+
+		/**
+		 * post-processing by the proof service; the inputs and outputs are
+		 * the numbers of inferences of the root
+		 */
+		POST_PROCESS("post-process");
+
+		private final String name_;
+
+		Stage(String name) {
+			this.name_ = name;
+		}
+
+		@Override
+		public String toString() {
+			return name_;
+		}
+
+	}
+
+	private final Map<Stage, Record> records_ = new EnumMap<Stage, Record>(
+			Stage.class);
+
+	/**
+	 * @param stage
+	 * @return {@code true} if the given stage was performed
+	 */
+	public boolean isRecorded(Stage stage) {
+		return records_.containsKey(stage);
+	}
+
+	/**
+	 * @param stage
+	 * @param unit
+	 * @return the wall time spent in the given stage or {@code 0} if the stage
+	 *         was not performed
+	 */
+	public long getTime(Stage stage, TimeUnit unit) {
+		Record record = records_.get(stage);
+		return record == null ? 0
+				: unit.convert(record.nanos_, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @param stage
+	 * @return the number of input inferences of the given stage or
+	 *         {@link #UNKNOWN} if it was not recorded
+	 */
+	public int getInputInferenceCount(Stage stage) {
+		Record record = records_.get(stage);
+		return record == null ? UNKNOWN : record.input_;
+	}
+
+	/**
+	 * @param stage
+	 * @return the number of output inferences of the given stage or
+	 *         {@link #UNKNOWN} if it was not recorded
+	 */
+	public int getOutputInferenceCount(Stage stage) {
+		Record record = records_.get(stage);
+		return record == null ? UNKNOWN : record.output_;
+	}
+
+	void record(Stage stage, long nanos, int input, int output) {
+		records_.put(stage, new Record(nanos, input, output));
+	}
+
+	/**
+	 * @param proof
+	 * @return the {@link Proof} with the same inferences as the given one for
+	 *         which the time spent in {@link Proof#getInferences(Object)} and
+	 *         the number of the returned inferences are counted; the results
+	 *         can be saved using {@link #record(InstrumentedProof)}
+	 */
+	<I extends Inference<?>> InstrumentedProof<I> instrument(
+			Proof<? extends I> proof) {
+		return new InstrumentedProof<I>(proof);
+	}
+
+	/**
+	 * Saves the current values counted by the given {@link InstrumentedProof}
+	 * as the results for {@link Stage#INFERENCES}
+	 * 
+	 * @param proof
+	 */
+	void record(InstrumentedProof<?> proof) {
+		synchronized (proof) {
+			record(Stage.INFERENCES, proof.nanos_, proof.requests_,
+					proof.inferences_);
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		for (Map.Entry<Stage, Record> entry : records_.entrySet()) {
+			if (result.length() > 0) {
+				result.append(", ");
+			}
+			Record record = entry.getValue();
+			result.append(entry.getKey()).append(": ")
+					.append(TimeUnit.NANOSECONDS.toMillis(record.nanos_))
+					.append(" ms, ").append(toString(record.input_))
+					.append(" -> ").append(toString(record.output_));
+		}
+		return result.toString();
+	}
+
+	private static String toString(int count) {
+		return count == UNKNOWN ? "?" : String.valueOf(count);
+	}
+
+	private static class Record {
+
+		final long nanos_;
+
+		final int input_, output_;
+
+		Record(long nanos, int input, int output) {
+			this.nanos_ = nanos;
+			this.input_ = input;
+			this.output_ = output;
+		}
+
+	}
+
+	static class InstrumentedProof<I extends Inference<?>>
+			extends DelegatingProof<I, Proof<? extends I>> {
+
+		private long nanos_ = 0;
+
+		private int requests_ = 0, inferences_ = 0;
+
+		InstrumentedProof(Proof<? extends I> delegate) {
+			super(delegate);
+		}
+
+		@Override
+		public Collection<? extends I> getInferences(Object conclusion) {
+			long start = System.nanoTime();
+			Collection<? extends I> result = super.getInferences(conclusion);
+			long nanos = System.nanoTime() - start;
+			synchronized (this) {
+				// can be called from several threads
+				nanos_ += nanos;
+				requests_++;
+				inferences_ += result.size();
+			}
+			return result;
+		}
+
+		/**
+		 * @return the total time in nanoseconds spent so far in
+		 *         {@link #getInferences(Object)}
+		 */
+		synchronized long getNanos() {
+			return nanos_;
+		}
+
+		/**
+		 * @param start
+		 *            the value of {@link System#nanoTime()} when a stage has
+		 *            started
+		 * @param startNanos
+		 *            the value of {@link #getNanos()} when this stage has
+		 *            started
+		 * @return the time in nanoseconds spent in this stage without the
+		 *         time spent in {@link #getInferences(Object)}
+		 */
+		long getExclusiveNanos(long start, long startNanos) {
+			long result = System.nanoTime() - start
+					- (getNanos() - startNanos);
+			// the inferences could be obtained in parallel
+			return Math.max(result, 0);
+		}
+
+	}
+
+}
@@ -22,17 +22,49 @@ package org.liveontologies.protege.explanation.proof;
  * #L%
  */
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import org.liveontologies.protege.explanation.proof.service.ProofPlugin;
 import org.liveontologies.protege.explanation.proof.service.ProofPluginLoader;
 import org.liveontologies.protege.explanation.proof.service.ProofService;
+import org.liveontologies.puli.DynamicProof;
+import org.liveontologies.puli.Inference;
+import org.liveontologies.puli.ProofNode;
 import org.protege.editor.core.Disposable;
 import org.protege.editor.owl.OWLEditorKit;
+import org.protege.editor.owl.model.event.EventType;
+import org.protege.editor.owl.model.event.OWLModelManagerChangeEvent;
+import org.protege.editor.owl.model.event.OWLModelManagerListener;
+import org.semanticweb.owlapi.model.AxiomType;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLOntologyChange;
+import org.semanticweb.owlapi.model.OWLOntologyChangeListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.MapMaker;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
- * Keeps track of the available {@link ProofService} plugins.
+ * Keeps track of the available {@link ProofService} plugins. The calls of
+ * every {@link ProofService} are made one at a time using the
+ * {@link Executor} returned by {@link #getExecutor(ProofService)}, so that
+ * the services do not need to be thread-safe.
  * 
  * @author Pavel Klinov pavel.klinov@uni-ulm.de
  * 
@@ -40,21 +72,110 @@ import org.protege.editor.owl.OWLEditorKit;
  */
 public class ProofServiceManager implements Disposable {
 
+	// logger for this class
+	private static final Logger LOGGER_ = LoggerFactory
+			.getLogger(ProofServiceManager.class);
+
 	private static final String KEY_ = "org.liveontologies.protege.explanation.proof.services";
 
+	/**
+	 * the maximal number of axioms for which the answers of the proof
+	 * services are kept
+	 */
+	private static final int MAX_ANSWERS_ = 10000;
+
 	private final OWLEditorKit kit_;
 
 	private final Collection<ProofService> services_;
 
+	/**
+	 * for every axiom type, the services from {@link #services_} that may
+	 * provide proofs for axioms of this type
+	 * 
+	 * @see ProofService#supportsAxiomType(AxiomType)
+	 */
+	private final Map<AxiomType<?>, List<ProofService>> servicesByType_ = new HashMap<AxiomType<?>, List<ProofService>>();
+
+	/**
+	 * for the recently checked axioms in the order of access, the results of
+	 * {@link ProofService#hasProof(OWLAxiom)} for the services that were
+	 * checked
+	 */
+	private final Map<OWLAxiom, Map<ProofService, Boolean>> answers_ = new LinkedHashMap<OWLAxiom, Map<ProofService, Boolean>>(
+			16, 0.75f, true) {
+
+		private static final long serialVersionUID = -2165484917296514395L;
+
+		@Override
+		protected boolean removeEldestEntry(
+				Map.Entry<OWLAxiom, Map<ProofService, Boolean>> eldest) {
+			return size() > MAX_ANSWERS_;
+		}
+
+	};
+
+	/**
+	 * incremented every time {@link #answers_} are discarded
+	 */
+	private int answersVersion_ = 0;
+
+	/**
+	 * discards {@link #answers_} when the ontologies change
+	 */
+	private final OWLOntologyChangeListener ontologyChangeListener_ = new OWLOntologyChangeListener() {
+		@Override
+		public void ontologiesChanged(
+				List<? extends OWLOntologyChange> changes) {
+			clearAnswers();
+		}
+	};
+
+	/**
+	 * discards {@link #answers_} when the reasoner or the active ontology
+	 * change
+	 */
+	private final OWLModelManagerListener modelManagerListener_ = new OWLModelManagerListener() {
+		@Override
+		public void handleChange(OWLModelManagerChangeEvent event) {
+			if (event.isType(EventType.ACTIVE_ONTOLOGY_CHANGED)
+					|| event.isType(EventType.REASONER_CHANGED)
+					|| event.isType(EventType.ONTOLOGY_CLASSIFIED)
+					|| event.isType(EventType.ONTOLOGY_LOADED)
+					|| event.isType(EventType.ONTOLOGY_RELOADED)) {
+				clearAnswers();
+			}
+		}
+	};
+
+	/**
+	 * used for running computations with proofs outside of the event dispatch
+	 * thread
+	 */
+	private final ExecutorService executor_;
+
+	/**
+	 * for every {@link ProofService}, the {@link Executor} using which the
+	 * service is called; the services are compared by identity and not
+	 * retained since some of them are created for every explanation
+	 */
+	private final Map<ProofService, SerialExecutor> serviceExecutors_ = new MapMaker()
+			.weakKeys().makeMap();
+
 	private ProofServiceManager(OWLEditorKit kit) throws Exception {
 		this.kit_ = kit;
 		this.services_ = new ArrayList<ProofService>();
+		this.executor_ = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+				.setNameFormat("proof-explanation-worker-%d").setDaemon(true)
+				.build());
 		ProofPluginLoader loader = new ProofPluginLoader(kit_);
 		for (ProofPlugin plugin : loader.getPlugins()) {
 			ProofService service = plugin.newInstance();
 			service.initialise();
 			services_.add(service);
 		}
+		kit_.getModelManager().getOWLOntologyManager()
+				.addOntologyChangeListener(ontologyChangeListener_);
+		kit_.getModelManager().addListener(modelManagerListener_);
 	}
 
 	public static synchronized ProofServiceManager get(OWLEditorKit editorKit)
@@ -70,6 +191,10 @@ public class ProofServiceManager implements Disposable {
 
 	@Override
 	public void dispose() {
+		kit_.getModelManager().getOWLOntologyManager()
+				.removeOntologyChangeListener(ontologyChangeListener_);
+		kit_.getModelManager().removeListener(modelManagerListener_);
+		executor_.shutdownNow();
 		for (ProofService proofService : services_) {
 			proofService.dispose();
 		}
@@ -83,4 +208,340 @@ public class ProofServiceManager implements Disposable {
 		return services_;
 	}
 
+	/**
+	 * @param type
+	 *            a type of {@link OWLAxiom}s
+	 * @return the proof services that may provide proofs for axioms of the
+	 *         given type
+	 * 
+	 * @see ProofService#supportsAxiomType(AxiomType)
+	 */
+	public synchronized Collection<ProofService> getProofServices(
+			AxiomType<?> type) {
+		List<ProofService> result = servicesByType_.get(type);
+		if (result == null) {
+			result = new ArrayList<ProofService>();
+			for (ProofService service : services_) {
+				if (service.supportsAxiomType(type)) {
+					result.add(service);
+				}
+			}
+			servicesByType_.put(type, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Checks whether some of the proof services can provide a proof for the
+	 * given entailment. The results are kept for the recently checked axioms
+	 * until the ontologies or the reasoner change, so that repeated checks,
+	 * e.g., when displaying lists of inferred axioms, do not query the
+	 * services again.
+	 * 
+	 * @param entailment
+	 * @return {@code true} if some proof service can provide a proof for the
+	 *         given entailment
+	 * 
+	 * @see ProofService#hasProof(OWLAxiom)
+	 */
+	public boolean hasProof(OWLAxiom entailment) {
+		Collection<ProofService> services = getProofServices(
+				entailment.getAxiomType());
+		List<ProofService> unknown = new ArrayList<ProofService>(
+				services.size());
+		for (ProofService service : services) {
+			Boolean answer = getAnswer(service, entailment);
+			if (answer == null) {
+				unknown.add(service);
+			} else if (answer) {
+				return true;
+			}
+		}
+		for (ProofService service : unknown) {
+			if (hasProof(service, entailment)) {
+				return true;
+			}
+		}
+		// else
+		return false;
+	}
+
+	/**
+	 * Checks whether the given proof service can provide a proof for the
+	 * given entailment; the results are kept like for
+	 * {@link #hasProof(OWLAxiom)}
+	 * 
+	 * @param service
+	 * @param entailment
+	 * @return the result of {@link ProofService#hasProof(OWLAxiom)}
+	 */
+	public boolean hasProof(ProofService service, OWLAxiom entailment) {
+		int version;
+		synchronized (this) {
+			Boolean answer = getAnswer(service, entailment);
+			if (answer != null) {
+				return answer;
+			}
+			// else
+			version = answersVersion_;
+		}
+		boolean result = getSerialExecutor(service)
+				.call(new Supplier<Boolean>() {
+					@Override
+					public Boolean get() {
+						return service.hasProof(entailment);
+					}
+				});
+		putAnswer(service, entailment, result, version);
+		return result;
+	}
+
+	/**
+	 * Obtains the proof from the given service, waiting until the previous
+	 * calls of this service are finished
+	 * 
+	 * @param service
+	 * @param entailment
+	 * @return the result of {@link ProofService#getProof(OWLAxiom)}
+	 */
+	public DynamicProof<Inference<? extends OWLAxiom>> getProof(
+			final ProofService service, final OWLAxiom entailment) {
+		return getSerialExecutor(service).call(
+				new Supplier<DynamicProof<Inference<? extends OWLAxiom>>>() {
+					@Override
+					public DynamicProof<Inference<? extends OWLAxiom>> get() {
+						return service.getProof(entailment);
+					}
+				});
+	}
+
+	/**
+	 * Obtains the example from the given service, waiting until the previous
+	 * calls of this service are finished
+	 * 
+	 * @param service
+	 * @param inference
+	 * @return the result of {@link ProofService#getExample(Inference)}
+	 */
+	public Inference<? extends OWLAxiom> getExample(final ProofService service,
+			final Inference<? extends OWLAxiom> inference) {
+		return getSerialExecutor(service)
+				.call(new Supplier<Inference<? extends OWLAxiom>>() {
+					@Override
+					public Inference<? extends OWLAxiom> get() {
+						return service.getExample(inference);
+					}
+				});
+	}
+
+	/**
+	 * Post-processes the proof using the given service, waiting until the
+	 * previous calls of this service are finished
+	 * 
+	 * @param service
+	 * @param node
+	 * @return the result of {@link ProofService#postProcess(ProofNode)}
+	 */
+	public ProofNode<OWLAxiom> postProcess(final ProofService service,
+			final ProofNode<OWLAxiom> node) {
+		return getSerialExecutor(service)
+				.call(new Supplier<ProofNode<OWLAxiom>>() {
+					@Override
+					public ProofNode<OWLAxiom> get() {
+						return service.postProcess(node);
+					}
+				});
+	}
+
+	/**
+	 * Checks without blocking whether the given proof service can provide a
+	 * proof for the given entailment; the results are kept like for
+	 * {@link #hasProof(OWLAxiom)}
+	 * 
+	 * @param service
+	 * @param entailment
+	 * @return the future result of
+	 *         {@link ProofService#hasProofAsync(OWLAxiom, Executor)} called
+	 *         with {@link #getExecutor(ProofService)}
+	 */
+	public CompletableFuture<Boolean> hasProofAsync(final ProofService service,
+			final OWLAxiom entailment) {
+		final int version;
+		synchronized (this) {
+			Boolean answer = getAnswer(service, entailment);
+			if (answer != null) {
+				return CompletableFuture.completedFuture(answer);
+			}
+			// else
+			version = answersVersion_;
+		}
+		return service.hasProofAsync(entailment, getExecutor(service))
+				.thenApply(new Function<Boolean, Boolean>() {
+					@Override
+					public Boolean apply(Boolean answer) {
+						putAnswer(service, entailment, answer, version);
+						return answer;
+					}
+				});
+	}
+
+	private synchronized Boolean getAnswer(ProofService service,
+			OWLAxiom entailment) {
+		Map<ProofService, Boolean> answers = answers_.get(entailment);
+		return answers == null ? null : answers.get(service);
+	}
+
+	private synchronized void putAnswer(ProofService service,
+			OWLAxiom entailment, Boolean answer, int version) {
+		if (answer == null || version != answersVersion_) {
+			// the answer may be outdated
+			return;
+		}
+		// else
+		Map<ProofService, Boolean> answers = answers_.get(entailment);
+		if (answers == null) {
+			answers = new HashMap<ProofService, Boolean>(4);
+			answers_.put(entailment, answers);
+		}
+		answers.put(service, answer);
+	}
+
+	private synchronized void clearAnswers() {
+		answers_.clear();
+		answersVersion_++;
+	}
+
+	/**
+	 * @return the {@link Executor} using which computations with proofs can be
+	 *         performed in the background
+	 */
+	public Executor getExecutor() {
+		return executor_;
+	}
+
+	/**
+	 * @param service
+	 * @return the {@link Executor} that runs the computations using the
+	 *         given {@link ProofService} in the background one at a time; the
+	 *         service should be called only using this {@link Executor}
+	 */
+	public Executor getExecutor(ProofService service) {
+		return getSerialExecutor(service);
+	}
+
+	private synchronized SerialExecutor getSerialExecutor(
+			ProofService service) {
+		SerialExecutor result = serviceExecutors_.get(service);
+		if (result == null) {
+			result = new SerialExecutor(executor_);
+			serviceExecutors_.put(service, result);
+		}
+		return result;
+	}
+
+	/**
+	 * An {@link Executor} that runs the commands one at a time in the order
+	 * in which they were submitted using another {@link Executor}
+	 */
+	private static class SerialExecutor implements Executor {
+
+		private final Executor executor_;
+
+		/**
+		 * the commands that are not yet run
+		 */
+		private final Queue<Runnable> commands_ = new ArrayDeque<Runnable>();
+
+		/**
+		 * the thread running the commands or {@code null} if the commands
+		 * are not being run
+		 */
+		private Thread thread_ = null;
+
+		private boolean running_ = false;
+
+		private final Runnable drain_ = new Runnable() {
+			@Override
+			public void run() {
+				drain();
+			}
+		};
+
+		SerialExecutor(Executor executor) {
+			this.executor_ = executor;
+		}
+
+		@Override
+		public synchronized void execute(Runnable command) {
+			commands_.add(command);
+			if (running_) {
+				return;
+			}
+			// else
+			running_ = true;
+			try {
+				executor_.execute(drain_);
+			} catch (RejectedExecutionException e) {
+				running_ = false;
+				commands_.clear();
+				throw e;
+			}
+		}
+
+		/**
+		 * Runs the given computation using this {@link Executor} and waits
+		 * for its result; the computation is run directly if it is called
+		 * from a command of this {@link Executor}
+		 * 
+		 * @param computation
+		 * @return the result of the computation
+		 */
+		<T> T call(Supplier<T> computation) {
+			boolean nested;
+			synchronized (this) {
+				nested = thread_ == Thread.currentThread();
+			}
+			if (nested) {
+				return computation.get();
+			}
+			// else
+			try {
+				return CompletableFuture.supplyAsync(computation, this).join();
+			} catch (CompletionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				// else
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				// else
+				throw e;
+			}
+		}
+
+		private void drain() {
+			for (;;) {
+				Runnable next;
+				synchronized (this) {
+					next = commands_.poll();
+					if (next == null) {
+						thread_ = null;
+						running_ = false;
+						return;
+					}
+					// else
+					thread_ = Thread.currentThread();
+				}
+				try {
+					next.run();
+				} catch (Throwable e) {
+					LOGGER_.error("The computation has failed", e);
+				}
+			}
+		}
+
+	}
+
 }
@@ -0,0 +1,461 @@
+package org.liveontologies.protege.explanation.proof;
+
+/*-
+ * #%L
+ * Protege Proof-Based Explanation
+ * $Id:$
+ * $HeadURL:$
+ * %%
+ * Copyright (C) 2014 - 2016 Live Ontologies Project
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+
+import org.liveontologies.puli.AbstractProofNode;
+import org.liveontologies.puli.AbstractProofStep;
+import org.liveontologies.puli.Inference;
+import org.liveontologies.puli.Proof;
+import org.liveontologies.puli.ProofNode;
+import org.liveontologies.puli.ProofNodes;
+import org.liveontologies.puli.ProofStep;
+import org.liveontologies.puli.pinpointing.InterruptMonitor;
+
+/**
+ * Creates {@link ProofNode}s with the same inferences as those obtained by
+ * {@link ProofNodes#eliminateNotDerivableAndCycles(ProofNode)} from the
+ * {@link ProofNode}s of a {@link Proof}, in which every inference is
+ * derivable without using the conclusions of the {@link ProofNode}s on the
+ * path from the root.
+ * <p>
+ * The {@link ProofNode}s created by {@link ProofNodes} are different for
+ * every path from the root, so the same subproofs are computed and stored
+ * many times. The inferences of a {@link ProofNode} depend, however, only on
+ * its conclusion and the conclusions on the path that belong to the same
+ * strongly connected component of the proof (the others cannot be used in
+ * the proof of the conclusion anyway). The {@link ProofNode}s created here
+ * are identified by this information and shared between all paths; in
+ * particular, the {@link ProofNode}s of conclusions that do not participate
+ * in cycles are created only once.
+ * <p>
+ * The inferences of a {@link ProofNode} are computed only when they are
+ * requested, e.g., when the conclusion is expanded in the user interface,
+ * and then stored. The derivability of premises is checked only within the
+ * component of the conclusion, whose size is usually small compared to the
+ * whole proof, and the results of the checks are reused for all
+ * {@link ProofNode}s on the paths with the same conclusions of the
+ * component.
+ * 
+ * @see InferenceGraph#computeComponents()
+ */
+public class SharedProofNodes {
+
+	private static final int[] NO_BLOCKED_ = new int[0];
+
+	/**
+	 * @param proof
+	 * @param goal
+	 * @param monitor
+	 * @return the root {@link ProofNode} for the given goal in which the
+	 *         inferences that are not derivable or used in cycles are
+	 *         removed, or {@code null} if the goal is not derivable
+	 * @throws CancellationException
+	 *             if the given {@link InterruptMonitor} reports interruption
+	 *             while retrieving the inferences from the {@link Proof}
+	 */
+	public static <C> ProofNode<C> create(
+			Proof<? extends Inference<? extends C>> proof, C goal,
+			InterruptMonitor monitor) throws CancellationException {
+		return new Factory<C>(new InferenceGraph<C>(proof, goal, monitor))
+				.getRoot();
+	}
+
+	private static class Factory<C> {
+
+		private final InferenceGraph<C> graph_;
+
+		/**
+		 * the index of the strongly connected component of every conclusion
+		 */
+		private final int[] components_;
+
+		/**
+		 * the indexes of the conclusions of every component
+		 */
+		private final int[][] members_;
+
+		/**
+		 * the position of every conclusion in the members of its component
+		 */
+		private final int[] positions_;
+
+		/**
+		 * the conclusions derivable when nothing is blocked
+		 */
+		private final boolean[] derivable_;
+
+		/**
+		 * for the sorted indexes of the blocked conclusions of a component,
+		 * the members of the component (at their positions) that are
+		 * derivable without using the blocked conclusions
+		 */
+		private final Map<Blocked, boolean[]> derivableInComponent_ = new HashMap<Blocked, boolean[]>();
+
+		/**
+		 * the created nodes, so that equal nodes are not created twice
+		 */
+		private final Map<NodeKey, SharedProofNode<C>> nodes_ = new HashMap<NodeKey, SharedProofNode<C>>();
+
+		Factory(InferenceGraph<C> graph) {
+			this.graph_ = graph;
+			this.components_ = graph.computeComponents();
+			int componentCount = 0;
+			for (int component : components_) {
+				componentCount = Math.max(componentCount, component + 1);
+			}
+			int[] memberCount = new int[componentCount];
+			this.positions_ = new int[components_.length];
+			for (int c = 0; c < components_.length; c++) {
+				positions_[c] = memberCount[components_[c]]++;
+			}
+			this.members_ = new int[componentCount][];
+			for (int component = 0; component < componentCount; component++) {
+				members_[component] = new int[memberCount[component]];
+			}
+			for (int c = 0; c < components_.length; c++) {
+				members_[components_[c]][positions_[c]] = c;
+			}
+			boolean[] derivable = graph.getChecker().getDerivable();
+			this.derivable_ = Arrays.copyOf(derivable, derivable.length);
+		}
+
+		SharedProofNode<C> getRoot() {
+			if (!derivable_[0]) {
+				return null;
+			}
+			// else
+			return getNode(0, NO_BLOCKED_);
+		}
+
+		/**
+		 * @param conclusion
+		 *            the index of the conclusion of the node
+		 * @param blocked
+		 *            the sorted indexes of the conclusions on the path to the
+		 *            node that belong to the same component as the conclusion
+		 * @return the node for the given parameters
+		 */
+		synchronized SharedProofNode<C> getNode(int conclusion,
+				int[] blocked) {
+			NodeKey key = new NodeKey(conclusion, blocked);
+			SharedProofNode<C> result = nodes_.get(key);
+			if (result == null) {
+				result = new SharedProofNode<C>(this, conclusion, blocked);
+				nodes_.put(key, result);
+			}
+			return result;
+		}
+
+		synchronized Collection<ProofStep<C>> computeSteps(SharedProofNode<C> node) {
+			int conclusion = node.conclusion_;
+			int component = components_[conclusion];
+			int[] blocked = insert(node.blocked_, conclusion);
+			// computed only if some premise is in the same component
+			boolean[] derivableInComponent = null;
+			int begin = graph_.getInferencesBegin(conclusion);
+			int end = graph_.getInferencesEnd(conclusion);
+			// equal inferences are returned only once
+			Set<ProofStep<C>> result = new LinkedHashSet<ProofStep<C>>(
+					end - begin);
+			inferences: for (int inf = begin; inf < end; inf++) {
+				int[] premiseIds = graph_.getPremises(inf);
+				List<SharedProofNode<C>> premises = new ArrayList<SharedProofNode<C>>(
+						premiseIds.length);
+				for (int premise : premiseIds) {
+					if (components_[premise] != component) {
+						// cannot use the blocked conclusions
+						if (!derivable_[premise]) {
+							continue inferences;
+						}
+						// else
+						premises.add(getNode(premise, NO_BLOCKED_));
+						continue;
+					}
+					// else
+					if (derivableInComponent == null) {
+						derivableInComponent = getDerivableInComponent(
+								component, blocked);
+					}
+					if (!derivableInComponent[positions_[premise]]) {
+						continue inferences;
+					}
+					// else
+					premises.add(getNode(premise, blocked));
+				}
+				result.add(new SharedProofStep<C>(graph_.getInference(inf),
+						node, premises));
+			}
+			return result;
+		}
+
+		/**
+		 * @param component
+		 *            the index of a component
+		 * @param blocked
+		 *            the sorted indexes of some conclusions of the component
+		 * @return the array that has {@code true} at the positions of the
+		 *         members of the component derivable without using the
+		 *         blocked conclusions; the array should not be modified
+		 */
+		private boolean[] getDerivableInComponent(int component,
+				int[] blocked) {
+			Blocked key = new Blocked(blocked);
+			boolean[] result = derivableInComponent_.get(key);
+			if (result == null) {
+				result = computeDerivableInComponent(component, blocked);
+				derivableInComponent_.put(key, result);
+			}
+			return result;
+		}
+
+		/**
+		 * Derives the members of the component by forward chaining; since the
+		 * premises of the inferences that are not in the component cannot
+		 * depend on the members of the component, their derivability does
+		 * not depend on the blocked conclusions
+		 * 
+		 * @see #getDerivableInComponent(int, int[])
+		 */
+		private boolean[] computeDerivableInComponent(int component,
+				int[] blocked) {
+			int[] members = members_[component];
+			boolean[] result = new boolean[members.length];
+			boolean[] isBlocked = new boolean[members.length];
+			for (int c : blocked) {
+				isBlocked[positions_[c]] = true;
+			}
+			// the position of the first inference of every member
+			int[] offsets = new int[members.length + 1];
+			for (int pos = 0; pos < members.length; pos++) {
+				offsets[pos + 1] = offsets[pos]
+						+ graph_.getInferencesEnd(members[pos])
+						- graph_.getInferencesBegin(members[pos]);
+			}
+			// the number of premises in the component that are not yet
+			// derived or -1 if some other premise is not derivable
+			int[] remaining = new int[offsets[members.length]];
+			int[] toPropagate = new int[members.length];
+			int size = 0;
+			for (int pos = 0; pos < members.length; pos++) {
+				int member = members[pos];
+				int begin = graph_.getInferencesBegin(member);
+				int end = graph_.getInferencesEnd(member);
+				for (int inf = begin; inf < end; inf++) {
+					int local = offsets[pos] + inf - begin;
+					for (int premise : graph_.getPremises(inf)) {
+						if (components_[premise] == component) {
+							remaining[local]++;
+						} else if (!derivable_[premise]) {
+							remaining[local] = -1;
+							break;
+						}
+					}
+					if (remaining[local] == 0 && !isBlocked[pos]
+							&& !result[pos]) {
+						result[pos] = true;
+						toPropagate[size++] = member;
+					}
+				}
+			}
+			while (size > 0) {
+				for (int inf : graph_.getPremiseIn(toPropagate[--size])) {
+					int conclusion = graph_.getConclusionOf(inf);
+					if (components_[conclusion] != component) {
+						continue;
+					}
+					// else
+					int pos = positions_[conclusion];
+					int local = offsets[pos] + inf
+							- graph_.getInferencesBegin(conclusion);
+					if (remaining[local] > 0 && --remaining[local] == 0
+							&& !isBlocked[pos] && !result[pos]) {
+						result[pos] = true;
+						toPropagate[size++] = conclusion;
+					}
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * @param sorted
+		 * @param value
+		 * @return a new sorted array that contains the elements of the given
+		 *         sorted array and the given value
+		 */
+		private static int[] insert(int[] sorted, int value) {
+			int[] result = new int[sorted.length + 1];
+			int pos = -Arrays.binarySearch(sorted, value) - 1;
+			System.arraycopy(sorted, 0, result, 0, pos);
+			result[pos] = value;
+			System.arraycopy(sorted, pos, result, pos + 1,
+					sorted.length - pos);
+			return result;
+		}
+
+		C getConclusion(int conclusion) {
+			return graph_.getConclusion(conclusion);
+		}
+
+	}
+
+	private static class NodeKey {
+
+		private final int conclusion_;
+
+		private final int[] blocked_;
+
+		NodeKey(int conclusion, int[] blocked) {
+			this.conclusion_ = conclusion;
+			this.blocked_ = blocked;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * conclusion_ + Arrays.hashCode(blocked_);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof NodeKey)) {
+				return false;
+			}
+			// else
+			NodeKey other = (NodeKey) o;
+			return conclusion_ == other.conclusion_
+					&& Arrays.equals(blocked_, other.blocked_);
+		}
+
+	}
+
+	/**
+	 * The sorted indexes of blocked conclusions that can be used as a key
+	 */
+	private static class Blocked {
+
+		private final int[] blocked_;
+
+		Blocked(int[] blocked) {
+			this.blocked_ = blocked;
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(blocked_);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Blocked)) {
+				return false;
+			}
+			// else
+			return Arrays.equals(blocked_, ((Blocked) o).blocked_);
+		}
+
+	}
+
+	private static class SharedProofNode<C> extends AbstractProofNode<C> {
+
+		private final Factory<C> factory_;
+
+		private final int conclusion_;
+
+		private final int[] blocked_;
+
+		private Collection<ProofStep<C>> steps_ = null;
+
+		SharedProofNode(Factory<C> factory, int conclusion, int[] blocked) {
+			super(factory.getConclusion(conclusion));
+			this.factory_ = factory;
+			this.conclusion_ = conclusion;
+			this.blocked_ = blocked;
+		}
+
+		@Override
+		public Collection<? extends ProofStep<C>> getInferences() {
+			synchronized (factory_) {
+				if (steps_ == null) {
+					steps_ = Collections.unmodifiableCollection(
+							factory_.computeSteps(this));
+				}
+				return steps_;
+			}
+		}
+
+	}
+
+	/**
+	 * A {@link ProofStep} for the given {@link Inference} with the given
+	 * {@link ProofNode}s of its conclusion and premises
+	 */
+	static class SharedProofStep<C> extends AbstractProofStep<C> {
+
+		private final Inference<? extends C> inference_;
+
+		private final ProofNode<C> conclusion_;
+
+		private final List<? extends ProofNode<C>> premises_;
+
+		SharedProofStep(Inference<? extends C> inference,
+				ProofNode<C> conclusion,
+				List<? extends ProofNode<C>> premises) {
+			this.inference_ = inference;
+			this.conclusion_ = conclusion;
+			this.premises_ = premises;
+		}
+
+		@Override
+		public String getName() {
+			return inference_.getName();
+		}
+
+		@Override
+		public ProofNode<C> getConclusion() {
+			return conclusion_;
+		}
+
+		@Override
+		public List<? extends ProofNode<C>> getPremises() {
+			return premises_;
+		}
+
+		@Override
+		public Inference<? extends C> getInference() {
+			return inference_;
+		}
+
+	}
+
+}
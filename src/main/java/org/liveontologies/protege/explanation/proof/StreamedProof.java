@@ -0,0 +1,234 @@
+package org.liveontologies.protege.explanation.proof;
+
+/*-
+ * #%L
+ * Protege Proof-Based Explanation
+ * $Id:$
+ * $HeadURL:$
+ * %%
+ * Copyright (C) 2014 - 2016 Live Ontologies Project
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.liveontologies.protege.explanation.proof.service.InferenceSubscriber;
+import org.liveontologies.protege.explanation.proof.service.InferenceSubscription;
+import org.liveontologies.protege.explanation.proof.service.ProofService;
+import org.liveontologies.puli.DynamicProof;
+import org.liveontologies.puli.Inference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link DynamicProof} consisting of the inferences received so far from
+ * a {@link ProofService} that streams them. The inferences are requested in
+ * batches: after a batch is received, the listeners are notified and the
+ * next, twice larger, batch is requested only when the inferences of this
+ * proof are retrieved again. Thus the inferences are not produced faster
+ * than the proof is processed.
+ * 
+ * @param <I>
+ *            the type of inferences provided by this proof
+ * 
+ * @see ProofService#streamInferences(org.semanticweb.owlapi.model.OWLAxiom,
+ *      InferenceSubscriber, java.util.concurrent.Executor)
+ */
+class StreamedProof<I extends Inference<?>>
+		implements DynamicProof<I>, InferenceSubscriber<I> {
+
+	// logger for this class
+	private static final Logger LOGGER_ = LoggerFactory
+			.getLogger(StreamedProof.class);
+
+	/**
+	 * the number of inferences requested first
+	 */
+	private static final int INITIAL_BATCH_SIZE_ = 128;
+
+	private final Map<Object, List<I>> inferences_ = new HashMap<Object, List<I>>();
+
+	private final List<DynamicProof.ChangeListener> listeners_ = new CopyOnWriteArrayList<DynamicProof.ChangeListener>();
+
+	private InferenceSubscription subscription_ = null;
+
+	/**
+	 * the number of inferences in the last requested batch
+	 */
+	private long batchSize_ = INITIAL_BATCH_SIZE_;
+
+	/**
+	 * the number of inferences of the last requested batch that are not yet
+	 * received
+	 */
+	private long remaining_ = 0;
+
+	/**
+	 * {@code true} if the last batch was received and the next batch should
+	 * be requested when the inferences are retrieved
+	 */
+	private boolean awaitingRetrieval_ = false;
+
+	/**
+	 * {@code true} if no more inferences will be received
+	 */
+	private boolean complete_ = false;
+
+	private boolean disposed_ = false;
+
+	@Override
+	public void onSubscribe(InferenceSubscription subscription) {
+		synchronized (this) {
+			if (disposed_) {
+				subscription.cancel();
+				return;
+			}
+			// else
+			subscription_ = subscription;
+			remaining_ = batchSize_;
+		}
+		subscription.request(batchSize_);
+	}
+
+	@Override
+	public void onInference(I inference) {
+		synchronized (this) {
+			List<I> inferences = inferences_.get(inference.getConclusion());
+			if (inferences == null) {
+				inferences = new ArrayList<I>();
+				inferences_.put(inference.getConclusion(), inferences);
+			}
+			inferences.add(inference);
+			remaining_--;
+			if (remaining_ > 0) {
+				return;
+			}
+			// else
+			awaitingRetrieval_ = true;
+		}
+		fireInferencesChanged();
+	}
+
+	@Override
+	public void onComplete() {
+		synchronized (this) {
+			complete_ = true;
+		}
+		fireInferencesChanged();
+	}
+
+	@Override
+	public void onReset() {
+		InferenceSubscription toRequest;
+		long n;
+		synchronized (this) {
+			if (disposed_) {
+				return;
+			}
+			// else
+			inferences_.clear();
+			complete_ = false;
+			awaitingRetrieval_ = false;
+			batchSize_ = INITIAL_BATCH_SIZE_;
+			remaining_ = batchSize_;
+			toRequest = subscription_;
+			n = batchSize_;
+		}
+		fireInferencesChanged();
+		if (toRequest != null) {
+			toRequest.request(n);
+		}
+	}
+
+	@Override
+	public void onError(Throwable error) {
+		LOGGER_.error("Inferences were not fully received", error);
+		onComplete();
+	}
+
+	/**
+	 * @return {@code true} if all inferences of this proof were received or
+	 *         no more inferences will be received due to an error
+	 */
+	public synchronized boolean isComplete() {
+		return complete_;
+	}
+
+	@Override
+	public Collection<? extends I> getInferences(Object conclusion) {
+		InferenceSubscription toRequest = null;
+		long n = 0;
+		Collection<? extends I> result;
+		synchronized (this) {
+			if (awaitingRetrieval_ && !complete_ && !disposed_) {
+				awaitingRetrieval_ = false;
+				batchSize_ *= 2;
+				remaining_ = batchSize_;
+				toRequest = subscription_;
+				n = batchSize_;
+			}
+			List<I> inferences = inferences_.get(conclusion);
+			result = inferences == null ? Collections.<I> emptyList()
+					: new ArrayList<I>(inferences);
+		}
+		if (toRequest != null) {
+			toRequest.request(n);
+		}
+		return result;
+	}
+
+	@Override
+	public void addListener(DynamicProof.ChangeListener listener) {
+		listeners_.add(listener);
+	}
+
+	@Override
+	public void removeListener(DynamicProof.ChangeListener listener) {
+		listeners_.remove(listener);
+	}
+
+	private void fireInferencesChanged() {
+		for (DynamicProof.ChangeListener listener : listeners_) {
+			try {
+				listener.inferencesChanged();
+			} catch (Throwable e) {
+				LOGGER_.warn("Remove the listener due to an exception", e);
+				removeListener(listener);
+			}
+		}
+	}
+
+	@Override
+	public void dispose() {
+		InferenceSubscription subscription;
+		synchronized (this) {
+			disposed_ = true;
+			subscription = subscription_;
+			subscription_ = null;
+			inferences_.clear();
+		}
+		listeners_.clear();
+		if (subscription != null) {
+			subscription.cancel();
+		}
+	}
+
+}
@@ -27,7 +27,6 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 
-import org.liveontologies.protege.explanation.proof.service.ProofService;
 import org.liveontologies.puli.Inference;
 import org.liveontologies.puli.ProofNode;
 import org.protege.editor.owl.model.OWLModelManager;
@@ -103,12 +102,8 @@ class InferenceRow extends AbstractProofFrameListRow<ConclusionSection>
 
 	@Override
 	public String getTooltip() {
-		ProofService proofService = section_.getFrame()
-				.getWorkbenchManager().getProofService();
-		if (proofService == null) {
-			return null;
-		}
-		Inference<? extends OWLAxiom> example = proofService
+		Inference<? extends OWLAxiom> example = section_.getFrame()
+				.getWorkbenchManager()
 				.getExample(section_.getInference().getInference());
 		if (example == null) {
 			return null;
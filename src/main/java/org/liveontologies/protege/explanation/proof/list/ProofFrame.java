@@ -137,7 +137,7 @@ public class ProofFrame implements OWLFrame<ProofRoot> {
 		setRootObject(new ProofRoot(man_.getEntailment(),
 				newProof == null ? Collections.<ProofNode<OWLAxiom>> emptyList()
 						: Collections.singletonList(newProof),
-				renderer_));
+				renderer_, man_.isProofRootComputing()));
 	}
 
 	@Override
@@ -41,22 +41,38 @@ public class ProofRoot implements ProofStep<OWLAxiom>, ProofNode<OWLAxiom> {
 
 	static final String NO_PROOF = "No proof for the entailment found.";
 
+	static final String COMPUTING_PROOF = "Computing proof for the entailment\u2026";
+
+	static final String PRELIMINARY_PROOF = "Proof tree for entailment (still processing\u2026)";
+
 	private final OWLAxiom member_;
 
 	private final List<? extends ProofNode<OWLAxiom>> premises_;
 
 	private final OWLRenderer renderer_;
 
+	/**
+	 * {@code true} if the proof is not yet computed; in this case this
+	 * {@link ProofRoot} serves as a placeholder or displays a preliminary
+	 * proof
+	 */
+	private final boolean computing_;
+
 	ProofRoot(final OWLAxiom member,
-			List<? extends ProofNode<OWLAxiom>> premises,
-			OWLRenderer renderer) {
+			List<? extends ProofNode<OWLAxiom>> premises, OWLRenderer renderer,
+			boolean computing) {
 		this.member_ = member;
 		this.premises_ = premises;
 		this.renderer_ = renderer;
+		this.computing_ = computing;
 	}
 
 	@Override
 	public String getName() {
+		if (computing_) {
+			return premises_.isEmpty() ? COMPUTING_PROOF : PRELIMINARY_PROOF;
+		}
+		// else
 		return premises_.isEmpty() ? NO_PROOF : SOME_PROOF;
 	}
 
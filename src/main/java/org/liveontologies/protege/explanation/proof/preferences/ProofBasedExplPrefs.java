@@ -30,12 +30,30 @@ public class ProofBasedExplPrefs {
 	private static final String PREFS_KEY_ = "PROOF_BASED_EXPLANATION_PREFS",
 			RECURSIVE_EXPANSION_LIMIT_KEY_ = "RECURSIVE_EXPANSION_LIMIT",
 			DISPLAYED_INFERENCES_PER_CONCLUSION_LIMIT_KEY = "DISPLAYED_INFERENCES_PER_CONCLUSION_LIMIT",
-			REMOVE_UNNECESSARY_INFERENCES_KEY = "REMOVE_UNNECESSARY_INFERENCES";
+			REMOVE_UNNECESSARY_INFERENCES_KEY = "REMOVE_UNNECESSARY_INFERENCES",
+			COMPUTE_PROOFS_IN_BACKGROUND_KEY = "COMPUTE_PROOFS_IN_BACKGROUND",
+			REMOVE_UNNECESSARY_INFERENCES_IN_PARALLEL_KEY = "REMOVE_UNNECESSARY_INFERENCES_IN_PARALLEL",
+			SHOW_PROOFS_PROGRESSIVELY_KEY = "SHOW_PROOFS_PROGRESSIVELY",
+			RETAINED_IMPORTS_CLOSURES_KEY = "RETAINED_IMPORTS_CLOSURES",
+			SERVICE_CHECK_TIMEOUT_KEY = "SERVICE_CHECK_TIMEOUT",
+			MERGE_PROOF_SERVICES_KEY = "MERGE_PROOF_SERVICES";
 
 	public final static String RECURSIVE_EXPANSION_LIMIT_DESCRIPTION = "The maximal number of inferences expanded upon long press or alt + click",
 			DISPLAYED_INFERENCES_PER_CONCLUSION_LIMIT_DESCRIPTION = "The maximal number of inferences displayed at once for each conclusion",
 			REMOVE_UNNECESSARY_INFERENCES_DESCRIPTION = "If checked, remove inferences unless it prevents"
-					+ " the entailment to be derived from any subset of axioms in the ontology";
+					+ " the entailment to be derived from any subset of axioms in the ontology",
+			COMPUTE_PROOFS_IN_BACKGROUND_DESCRIPTION = "If checked, proofs are prepared for displaying"
+					+ " in the background and shown once ready; otherwise the user interface waits until proofs are prepared",
+			REMOVE_UNNECESSARY_INFERENCES_IN_PARALLEL_DESCRIPTION = "If checked, use several threads for finding"
+					+ " unnecessary inferences, which is faster for large proofs on multi-core machines",
+			SHOW_PROOFS_PROGRESSIVELY_DESCRIPTION = "If checked, proofs computed in the background"
+					+ " are shown before unnecessary inferences are removed and updated once ready",
+			RETAINED_IMPORTS_CLOSURES_DESCRIPTION = "The maximal number of imports closures whose axioms"
+					+ " are kept in memory for reuse when no explanation uses them",
+			SERVICE_CHECK_TIMEOUT_DESCRIPTION = "The maximal time in milliseconds to wait for the proof services"
+					+ " to find a proof; the services that answer later are added to the selection once ready",
+			MERGE_PROOF_SERVICES_DESCRIPTION = "If checked and several proof services can provide a proof,"
+					+ " offer also the proof combining the inferences of all these services";
 
 	private final static int DEFAULT_RECURSIVE_EXPANSION_LIMIT_ = 300; // inferences
 
@@ -43,6 +61,18 @@ public class ProofBasedExplPrefs {
 
 	private final static boolean DEFAULT_REMOVE_UNNECESSARY_INFERENCES_ = true;
 
+	private final static boolean DEFAULT_COMPUTE_PROOFS_IN_BACKGROUND_ = true;
+
+	private final static boolean DEFAULT_REMOVE_UNNECESSARY_INFERENCES_IN_PARALLEL_ = false;
+
+	private final static boolean DEFAULT_SHOW_PROOFS_PROGRESSIVELY_ = true;
+
+	private final static int DEFAULT_RETAINED_IMPORTS_CLOSURES_ = 2;
+
+	private final static int DEFAULT_SERVICE_CHECK_TIMEOUT_ = 2000; // ms
+
+	private final static boolean DEFAULT_MERGE_PROOF_SERVICES_ = false;
+
 	/**
 	 * {@value #RECURSIVE_EXPANSION_LIMIT_DESCRIPTION}
 	 */
@@ -58,6 +88,36 @@ public class ProofBasedExplPrefs {
 	 */
 	public boolean removeUnnecessaryInferences = DEFAULT_REMOVE_UNNECESSARY_INFERENCES_;
 
+	/**
+	 * {@value #COMPUTE_PROOFS_IN_BACKGROUND_DESCRIPTION}
+	 */
+	public boolean computeProofsInBackground = DEFAULT_COMPUTE_PROOFS_IN_BACKGROUND_;
+
+	/**
+	 * {@value #REMOVE_UNNECESSARY_INFERENCES_IN_PARALLEL_DESCRIPTION}
+	 */
+	public boolean removeUnnecessaryInferencesInParallel = DEFAULT_REMOVE_UNNECESSARY_INFERENCES_IN_PARALLEL_;
+
+	/**
+	 * {@value #SHOW_PROOFS_PROGRESSIVELY_DESCRIPTION}
+	 */
+	public boolean showProofsProgressively = DEFAULT_SHOW_PROOFS_PROGRESSIVELY_;
+
+	/**
+	 * {@value #RETAINED_IMPORTS_CLOSURES_DESCRIPTION}
+	 */
+	public int retainedImportsClosures = DEFAULT_RETAINED_IMPORTS_CLOSURES_;
+
+	/**
+	 * {@value #SERVICE_CHECK_TIMEOUT_DESCRIPTION}
+	 */
+	public int serviceCheckTimeout = DEFAULT_SERVICE_CHECK_TIMEOUT_; // ms
+
+	/**
+	 * {@value #MERGE_PROOF_SERVICES_DESCRIPTION}
+	 */
+	public boolean mergeProofServices = DEFAULT_MERGE_PROOF_SERVICES_;
+
 	private ProofBasedExplPrefs() {
 
 	}
@@ -85,6 +145,21 @@ public class ProofBasedExplPrefs {
 		removeUnnecessaryInferences = prefs.getBoolean(
 				REMOVE_UNNECESSARY_INFERENCES_KEY,
 				DEFAULT_REMOVE_UNNECESSARY_INFERENCES_);
+		computeProofsInBackground = prefs.getBoolean(
+				COMPUTE_PROOFS_IN_BACKGROUND_KEY,
+				DEFAULT_COMPUTE_PROOFS_IN_BACKGROUND_);
+		removeUnnecessaryInferencesInParallel = prefs.getBoolean(
+				REMOVE_UNNECESSARY_INFERENCES_IN_PARALLEL_KEY,
+				DEFAULT_REMOVE_UNNECESSARY_INFERENCES_IN_PARALLEL_);
+		showProofsProgressively = prefs.getBoolean(
+				SHOW_PROOFS_PROGRESSIVELY_KEY,
+				DEFAULT_SHOW_PROOFS_PROGRESSIVELY_);
+		retainedImportsClosures = prefs.getInt(RETAINED_IMPORTS_CLOSURES_KEY,
+				DEFAULT_RETAINED_IMPORTS_CLOSURES_);
+		serviceCheckTimeout = prefs.getInt(SERVICE_CHECK_TIMEOUT_KEY,
+				DEFAULT_SERVICE_CHECK_TIMEOUT_);
+		mergeProofServices = prefs.getBoolean(MERGE_PROOF_SERVICES_KEY,
+				DEFAULT_MERGE_PROOF_SERVICES_);
 		return this;
 	}
 
@@ -95,6 +170,15 @@ public class ProofBasedExplPrefs {
 				displayedInferencesPerConclusionLimit);
 		prefs.putBoolean(REMOVE_UNNECESSARY_INFERENCES_KEY,
 				removeUnnecessaryInferences);
+		prefs.putBoolean(COMPUTE_PROOFS_IN_BACKGROUND_KEY,
+				computeProofsInBackground);
+		prefs.putBoolean(REMOVE_UNNECESSARY_INFERENCES_IN_PARALLEL_KEY,
+				removeUnnecessaryInferencesInParallel);
+		prefs.putBoolean(SHOW_PROOFS_PROGRESSIVELY_KEY,
+				showProofsProgressively);
+		prefs.putInt(RETAINED_IMPORTS_CLOSURES_KEY, retainedImportsClosures);
+		prefs.putInt(SERVICE_CHECK_TIMEOUT_KEY, serviceCheckTimeout);
+		prefs.putBoolean(MERGE_PROOF_SERVICES_KEY, mergeProofServices);
 		return this;
 	}
 
@@ -102,6 +186,12 @@ public class ProofBasedExplPrefs {
 		recursiveExpansionLimit = DEFAULT_RECURSIVE_EXPANSION_LIMIT_;
 		displayedInferencesPerConclusionLimit = DEFAULT_DISPLAYED_INFERENCES_PER_CONCLUSION_LIMIT_;
 		removeUnnecessaryInferences = DEFAULT_REMOVE_UNNECESSARY_INFERENCES_;
+		computeProofsInBackground = DEFAULT_COMPUTE_PROOFS_IN_BACKGROUND_;
+		removeUnnecessaryInferencesInParallel = DEFAULT_REMOVE_UNNECESSARY_INFERENCES_IN_PARALLEL_;
+		showProofsProgressively = DEFAULT_SHOW_PROOFS_PROGRESSIVELY_;
+		retainedImportsClosures = DEFAULT_RETAINED_IMPORTS_CLOSURES_;
+		serviceCheckTimeout = DEFAULT_SERVICE_CHECK_TIMEOUT_;
+		mergeProofServices = DEFAULT_MERGE_PROOF_SERVICES_;
 		return this;
 	}
 
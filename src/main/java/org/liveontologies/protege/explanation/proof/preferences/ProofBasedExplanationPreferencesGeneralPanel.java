@@ -45,9 +45,12 @@ public class ProofBasedExplanationPreferencesGeneralPanel extends OWLPreferences
 	private static final long serialVersionUID = 8585913940466665136L;
 
 	private SpinnerNumberModel recursiveExpansionLimitModel_,
-			displayedInferencesPerConclusionLimitModel_;
+			displayedInferencesPerConclusionLimitModel_,
+			retainedImportsClosuresModel_, serviceCheckTimeoutModel_;
 
-	private JCheckBox removeUnnecessaryInferences_;
+	private JCheckBox removeUnnecessaryInferences_,
+			removeUnnecessaryInferencesInParallel_, computeProofsInBackground_,
+			showProofsProgressively_, mergeProofServices_;
 
 	@Override
 	public void initialise() throws Exception {
@@ -58,6 +61,12 @@ public class ProofBasedExplanationPreferencesGeneralPanel extends OWLPreferences
 		addRecursiveExpansionLimitSettings(panel);
 		addDisplayedInferencesPerConclusionLimitSettings(panel);
 		addRemoveUnnecessaryInferencesSettings(panel);
+		addRemoveUnnecessaryInferencesInParallelSettings(panel);
+		addComputeProofsInBackgroundSettings(panel);
+		addShowProofsProgressivelySettings(panel);
+		addRetainedImportsClosuresSettings(panel);
+		addServiceCheckTimeoutSettings(panel);
+		addMergeProofServicesSettings(panel);
 		panel.addGroup("");
 		panel.addGroupComponent(buildResetComponent());
 		loadFrom(ProofBasedExplPrefs.create().load());
@@ -82,6 +91,14 @@ public class ProofBasedExplanationPreferencesGeneralPanel extends OWLPreferences
 				.setValue(prefs.displayedInferencesPerConclusionLimit);
 		removeUnnecessaryInferences_
 				.setSelected(prefs.removeUnnecessaryInferences);
+		removeUnnecessaryInferencesInParallel_
+				.setSelected(prefs.removeUnnecessaryInferencesInParallel);
+		computeProofsInBackground_
+				.setSelected(prefs.computeProofsInBackground);
+		showProofsProgressively_.setSelected(prefs.showProofsProgressively);
+		retainedImportsClosuresModel_.setValue(prefs.retainedImportsClosures);
+		serviceCheckTimeoutModel_.setValue(prefs.serviceCheckTimeout);
+		mergeProofServices_.setSelected(prefs.mergeProofServices);
 	}
 
 	private void saveTo(ProofBasedExplPrefs prefs) {
@@ -91,6 +108,16 @@ public class ProofBasedExplanationPreferencesGeneralPanel extends OWLPreferences
 				.getNumber().intValue();
 		prefs.removeUnnecessaryInferences = removeUnnecessaryInferences_
 				.isSelected();
+		prefs.removeUnnecessaryInferencesInParallel = removeUnnecessaryInferencesInParallel_
+				.isSelected();
+		prefs.computeProofsInBackground = computeProofsInBackground_
+				.isSelected();
+		prefs.showProofsProgressively = showProofsProgressively_.isSelected();
+		prefs.retainedImportsClosures = retainedImportsClosuresModel_
+				.getNumber().intValue();
+		prefs.serviceCheckTimeout = serviceCheckTimeoutModel_.getNumber()
+				.intValue();
+		prefs.mergeProofServices = mergeProofServices_.isSelected();
 	}
 
 	private void addInstalledProofServicesComponent(
@@ -144,6 +171,61 @@ public class ProofBasedExplanationPreferencesGeneralPanel extends OWLPreferences
 				ProofBasedExplPrefs.REMOVE_UNNECESSARY_INFERENCES_DESCRIPTION);
 	}
 
+	private void addRemoveUnnecessaryInferencesInParallelSettings(
+			PreferencesLayoutPanel panel) {
+		removeUnnecessaryInferencesInParallel_ = new JCheckBox(
+				"Remove unnecessary inferences in parallel");
+		panel.addGroupComponent(removeUnnecessaryInferencesInParallel_);
+		removeUnnecessaryInferencesInParallel_.setToolTipText(
+				ProofBasedExplPrefs.REMOVE_UNNECESSARY_INFERENCES_IN_PARALLEL_DESCRIPTION);
+	}
+
+	private void addComputeProofsInBackgroundSettings(
+			PreferencesLayoutPanel panel) {
+		computeProofsInBackground_ = new JCheckBox(
+				"Compute proofs in background");
+		panel.addGroupComponent(computeProofsInBackground_);
+		computeProofsInBackground_.setToolTipText(
+				ProofBasedExplPrefs.COMPUTE_PROOFS_IN_BACKGROUND_DESCRIPTION);
+	}
+
+	private void addShowProofsProgressivelySettings(
+			PreferencesLayoutPanel panel) {
+		showProofsProgressively_ = new JCheckBox("Show proofs progressively");
+		panel.addGroupComponent(showProofsProgressively_);
+		showProofsProgressively_.setToolTipText(
+				ProofBasedExplPrefs.SHOW_PROOFS_PROGRESSIVELY_DESCRIPTION);
+	}
+
+	private void addRetainedImportsClosuresSettings(
+			PreferencesLayoutPanel panel) {
+		panel.addGroup("Retained unused imports closures");
+		retainedImportsClosuresModel_ = new SpinnerNumberModel(0, 0, 999, 1);
+		JComponent spinner = new JSpinner(retainedImportsClosuresModel_);
+		spinner.setMaximumSize(spinner.getPreferredSize());
+		panel.addGroupComponent(spinner);
+		String tooltip = ProofBasedExplPrefs.RETAINED_IMPORTS_CLOSURES_DESCRIPTION;
+		spinner.setToolTipText(tooltip);
+	}
+
+	private void addServiceCheckTimeoutSettings(PreferencesLayoutPanel panel) {
+		panel.addGroup("Proof service timeout (ms)");
+		serviceCheckTimeoutModel_ = new SpinnerNumberModel(0, 0, 600000, 100);
+		JComponent spinner = new JSpinner(serviceCheckTimeoutModel_);
+		spinner.setMaximumSize(spinner.getPreferredSize());
+		panel.addGroupComponent(spinner);
+		String tooltip = ProofBasedExplPrefs.SERVICE_CHECK_TIMEOUT_DESCRIPTION;
+		spinner.setToolTipText(tooltip);
+	}
+
+	private void addMergeProofServicesSettings(PreferencesLayoutPanel panel) {
+		mergeProofServices_ = new JCheckBox(
+				"Offer proofs merged from all proof services");
+		panel.addGroupComponent(mergeProofServices_);
+		mergeProofServices_.setToolTipText(
+				ProofBasedExplPrefs.MERGE_PROOF_SERVICES_DESCRIPTION);
+	}
+
 	private JComponent buildResetComponent() {
 		JButton resetButton = new JButton("Reset");
 		resetButton.addActionListener(e -> reset());
@@ -0,0 +1,267 @@
+package org.liveontologies.protege.explanation.proof.service;
+
+/*-
+ * #%L
+ * Protege Proof-Based Explanation
+ * $Id:$
+ * $HeadURL:$
+ * %%
+ * Copyright (C) 2014 - 2016 Live Ontologies Project
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import org.liveontologies.puli.DynamicProof;
+import org.liveontologies.puli.Inference;
+import org.semanticweb.owlapi.model.OWLAxiom;
+
+/**
+ * Streams the inferences of the proof obtained by
+ * {@link ProofService#getProof(OWLAxiom)} in the breadth-first order
+ * starting from the entailment. The inferences are sent using an
+ * {@link Executor} as they are requested. When the proof changes, the
+ * subscriber is reset and the inferences are sent again from the
+ * beginning; the proof is kept until the subscription is cancelled.
+ * 
+ * @see ProofService#streamInferences(OWLAxiom, InferenceSubscriber,
+ *      Executor)
+ */
+class BreadthFirstInferenceSubscription
+		implements InferenceSubscription, Runnable, DynamicProof.ChangeListener {
+
+	private final ProofService service_;
+
+	private final OWLAxiom entailment_;
+
+	private final InferenceSubscriber<Inference<? extends OWLAxiom>> subscriber_;
+
+	private final Executor executor_;
+
+	/**
+	 * the proof whose inferences are streamed; obtained when the first
+	 * inference is requested
+	 */
+	private DynamicProof<Inference<? extends OWLAxiom>> proof_ = null;
+
+	/**
+	 * the conclusions whose inferences are not yet retrieved in the order in
+	 * which they should be retrieved
+	 */
+	private final Queue<Object> toExpand_ = new ArrayDeque<Object>();
+
+	/**
+	 * the conclusions that were added to {@link #toExpand_}
+	 */
+	private final Set<Object> expanded_ = new HashSet<Object>();
+
+	/**
+	 * the retrieved inferences that are not yet sent
+	 */
+	private final Queue<Inference<? extends OWLAxiom>> toSend_ = new ArrayDeque<Inference<? extends OWLAxiom>>();
+
+	/**
+	 * the number of inferences requested but not yet sent
+	 */
+	private long demand_ = 0;
+
+	/**
+	 * {@code true} if the inferences are currently being sent
+	 */
+	private boolean running_ = false;
+
+	/**
+	 * {@code true} if all inferences were sent or they cannot be sent
+	 */
+	private boolean done_ = false;
+
+	/**
+	 * {@code true} if {@link #proof_} has changed and the subscriber should
+	 * be reset
+	 */
+	private boolean changed_ = false;
+
+	/**
+	 * {@code true} if no inferences should be sent anymore
+	 */
+	private boolean cancelled_ = false;
+
+	BreadthFirstInferenceSubscription(ProofService service,
+			OWLAxiom entailment,
+			InferenceSubscriber<Inference<? extends OWLAxiom>> subscriber,
+			Executor executor) {
+		this.service_ = service;
+		this.entailment_ = entailment;
+		this.subscriber_ = subscriber;
+		this.executor_ = executor;
+	}
+
+	@Override
+	public synchronized void request(long n) {
+		if (n <= 0) {
+			throw new IllegalArgumentException(
+					"The number of requested inferences must be positive: "
+							+ n);
+		}
+		// else
+		demand_ = demand_ + n < 0 ? Long.MAX_VALUE : demand_ + n;
+		if (!done_) {
+			runIfNeeded();
+		}
+	}
+
+	@Override
+	public void cancel() {
+		DynamicProof<Inference<? extends OWLAxiom>> proof;
+		synchronized (this) {
+			cancelled_ = true;
+			if (running_) {
+				// disposed by the running thread
+				return;
+			}
+			// else
+			proof = proof_;
+			proof_ = null;
+		}
+		dispose(proof);
+	}
+
+	@Override
+	public synchronized void inferencesChanged() {
+		changed_ = true;
+		runIfNeeded();
+	}
+
+	private void runIfNeeded() {
+		if (!running_ && !cancelled_) {
+			running_ = true;
+			executor_.execute(this);
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			for (;;) {
+				boolean reset = false;
+				synchronized (this) {
+					if (cancelled_) {
+						running_ = false;
+						break;
+					}
+					// else
+					if (changed_) {
+						changed_ = false;
+						reset = true;
+						done_ = false;
+						demand_ = 0;
+						expanded_.clear();
+						toExpand_.clear();
+						toSend_.clear();
+						expanded_.add(entailment_);
+						toExpand_.add(entailment_);
+					} else if (done_ || demand_ == 0) {
+						running_ = false;
+						break;
+					} else {
+						demand_--;
+					}
+				}
+				if (reset) {
+					subscriber_.onReset();
+					continue;
+				}
+				// else
+				Inference<? extends OWLAxiom> next = nextInference();
+				if (next == null) {
+					synchronized (this) {
+						done_ = true;
+					}
+					subscriber_.onComplete();
+					continue;
+				}
+				// else
+				subscriber_.onInference(next);
+			}
+		} catch (Throwable e) {
+			synchronized (this) {
+				done_ = true;
+				running_ = false;
+			}
+			subscriber_.onError(e);
+		}
+		disposeIfCancelled();
+	}
+
+	/**
+	 * @return the next inference to be sent or {@code null} if all
+	 *         inferences were sent
+	 */
+	private Inference<? extends OWLAxiom> nextInference() {
+		if (proof_ == null) {
+			DynamicProof<Inference<? extends OWLAxiom>> proof = service_
+					.getProof(entailment_);
+			proof.addListener(this);
+			synchronized (this) {
+				proof_ = proof;
+			}
+			expanded_.add(entailment_);
+			toExpand_.add(entailment_);
+		}
+		for (;;) {
+			Inference<? extends OWLAxiom> next = toSend_.poll();
+			if (next != null) {
+				for (Object premise : next.getPremises()) {
+					if (expanded_.add(premise)) {
+						toExpand_.add(premise);
+					}
+				}
+				return next;
+			}
+			// else
+			Object conclusion = toExpand_.poll();
+			if (conclusion == null) {
+				return null;
+			}
+			// else
+			toSend_.addAll(proof_.getInferences(conclusion));
+		}
+	}
+
+	private void disposeIfCancelled() {
+		DynamicProof<Inference<? extends OWLAxiom>> proof;
+		synchronized (this) {
+			if (!cancelled_ || running_) {
+				return;
+			}
+			// else
+			proof = proof_;
+			proof_ = null;
+		}
+		dispose(proof);
+	}
+
+	private void dispose(DynamicProof<Inference<? extends OWLAxiom>> proof) {
+		if (proof != null) {
+			proof.removeListener(this);
+			proof.dispose();
+		}
+	}
+
+}
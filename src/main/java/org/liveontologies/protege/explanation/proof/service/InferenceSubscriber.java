@@ -0,0 +1,74 @@
+package org.liveontologies.protege.explanation.proof.service;
+
+/*-
+ * #%L
+ * Protege Proof-Based Explanation
+ * $Id:$
+ * $HeadURL:$
+ * %%
+ * Copyright (C) 2014 - 2016 Live Ontologies Project
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Receives the inferences streamed by a {@link ProofService}. The methods
+ * are called sequentially, but not necessarily from the same thread.
+ * 
+ * @param <I>
+ *            the type of the received inferences
+ * 
+ * @see ProofService#streamInferences(org.semanticweb.owlapi.model.OWLAxiom,
+ *      InferenceSubscriber, java.util.concurrent.Executor)
+ */
+public interface InferenceSubscriber<I> {
+
+	/**
+	 * Called once before any other method; no inferences are sent until they
+	 * are requested using the given {@link InferenceSubscription}
+	 * 
+	 * @param subscription
+	 */
+	void onSubscribe(InferenceSubscription subscription);
+
+	/**
+	 * Called for every streamed inference, but not more often than requested
+	 * 
+	 * @param inference
+	 */
+	void onInference(I inference);
+
+	/**
+	 * Called when all inferences were streamed; afterwards, only
+	 * {@link #onReset()} can be called
+	 */
+	void onComplete();
+
+	/**
+	 * Called when the inferences sent so far are outdated since the proof
+	 * has changed, also after {@link #onComplete()}; the previous requests
+	 * are discarded and the inferences of the changed proof are sent from
+	 * the beginning as they are requested again
+	 */
+	void onReset();
+
+	/**
+	 * Called when the inferences cannot be streamed anymore; no methods are
+	 * called afterwards
+	 * 
+	 * @param error
+	 */
+	void onError(Throwable error);
+
+}
@@ -0,0 +1,47 @@
+package org.liveontologies.protege.explanation.proof.service;
+
+/*-
+ * #%L
+ * Protege Proof-Based Explanation
+ * $Id:$
+ * $HeadURL:$
+ * %%
+ * Copyright (C) 2014 - 2016 Live Ontologies Project
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Controls the streaming of inferences to an {@link InferenceSubscriber}
+ * 
+ * @see InferenceSubscriber#onSubscribe(InferenceSubscription)
+ */
+public interface InferenceSubscription {
+
+	/**
+	 * Allows to send the given number of inferences in addition to those
+	 * that were requested before
+	 * 
+	 * @param n
+	 *            a positive number
+	 */
+	void request(long n);
+
+	/**
+	 * Stops sending inferences; the inferences that are already being sent
+	 * may still arrive
+	 */
+	void cancel();
+
+}
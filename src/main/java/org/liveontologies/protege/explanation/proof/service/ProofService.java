@@ -21,6 +21,10 @@
  */
 package org.liveontologies.protege.explanation.proof.service;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
 import org.liveontologies.puli.AssertedConclusionInference;
 import org.liveontologies.puli.DynamicProof;
 import org.liveontologies.puli.Inference;
@@ -31,11 +35,17 @@ import org.liveontologies.puli.ProofStep;
 import org.liveontologies.puli.Proofs;
 import org.protege.editor.core.plugin.ProtegePluginInstance;
 import org.protege.editor.owl.OWLEditorKit;
+import org.semanticweb.owlapi.model.AxiomType;
 import org.semanticweb.owlapi.model.OWLAxiom;
 import org.semanticweb.owlapi.reasoner.UnsupportedEntailmentTypeException;
 
 /**
- * A skeleton for a plugin that can provide proofs for OWL axioms
+ * A skeleton for a plugin that can provide proofs for OWL axioms. The
+ * methods of a service are not called concurrently: the calls are made one
+ * at a time, and the {@link Executor}s passed to the methods run the
+ * computations one at a time after the previous calls are finished. Thus
+ * services do not need to be thread-safe, but the proofs they return may be
+ * accessed from other threads.
  * 
  * @author Yevgeny Kazakov
  *
@@ -103,6 +113,111 @@ public abstract class ProofService implements ProtegePluginInstance {
 	public abstract DynamicProof<Inference<? extends OWLAxiom>> getProof(
 			OWLAxiom entailment) throws UnsupportedEntailmentTypeException;
 
+	/**
+	 * @param type
+	 *            a type of {@link OWLAxiom}s
+	 * @return {@code false} if this service cannot provide proofs for any
+	 *         {@link OWLAxiom} of the given type; in this case,
+	 *         {@link #hasProof(OWLAxiom)} is not called for such axioms. By
+	 *         default, {@code true} is returned.
+	 */
+	public boolean supportsAxiomType(AxiomType<?> type) {
+		return true;
+	}
+
+	/**
+	 * Checks without blocking whether this service can provide a proof for
+	 * the given entailment. By default, {@link #hasProof(OWLAxiom)} is called
+	 * using the given {@link Executor}; services that can answer without
+	 * blocking may override this method.
+	 * 
+	 * @param entailment
+	 *            the entailed {@link OWLAxiom} for which the proof should be
+	 *            found
+	 * @param executor
+	 *            the {@link Executor} that runs blocking computations with
+	 *            this service one at a time
+	 * @return the future result of {@link #hasProof(OWLAxiom)}
+	 */
+	public CompletableFuture<Boolean> hasProofAsync(final OWLAxiom entailment,
+			Executor executor) {
+		return CompletableFuture.supplyAsync(new Supplier<Boolean>() {
+			@Override
+			public Boolean get() {
+				return hasProof(entailment);
+			}
+		}, executor);
+	}
+
+	/**
+	 * Obtains the proof for the given entailment without blocking. By
+	 * default, {@link #getProof(OWLAxiom)} is called using the given
+	 * {@link Executor}; services that can provide proofs without blocking may
+	 * override this method.
+	 * 
+	 * @param entailment
+	 *            the {@link OWLAxiom} for which the proof should be generated
+	 * @param executor
+	 *            the {@link Executor} that runs blocking computations with
+	 *            this service one at a time
+	 * @return the future result of {@link #getProof(OWLAxiom)}; it is
+	 *         completed exceptionally if the proof cannot be provided
+	 */
+	public CompletableFuture<DynamicProof<Inference<? extends OWLAxiom>>> getProofAsync(
+			final OWLAxiom entailment, Executor executor) {
+		return CompletableFuture.supplyAsync(
+				new Supplier<DynamicProof<Inference<? extends OWLAxiom>>>() {
+					@Override
+					public DynamicProof<Inference<? extends OWLAxiom>> get() {
+						return getProof(entailment);
+					}
+				}, executor);
+	}
+
+	/**
+	 * @return {@code true} if this service produces the inferences of its
+	 *         proofs lazily and overrides
+	 *         {@link #streamInferences(OWLAxiom, InferenceSubscriber, Executor)}
+	 *         so that the proofs can be displayed before they are complete. By
+	 *         default, {@code false} is returned and the proofs are obtained
+	 *         using {@link #getProofAsync(OWLAxiom, Executor)}.
+	 */
+	public boolean streamsInferences() {
+		return false;
+	}
+
+	/**
+	 * Sends the inferences of the proof for the given {@link OWLAxiom} to the
+	 * given {@link InferenceSubscriber} as they are requested. The inferences
+	 * should be sent in the breadth-first order starting from the inferences
+	 * of the given {@link OWLAxiom}, so that the inferences closest to it
+	 * arrive first. Together, the sent inferences should form the proof
+	 * described in {@link #getProof(OWLAxiom)}. When this proof changes,
+	 * {@link InferenceSubscriber#onReset()} should be called and the
+	 * inferences should be sent again, until the stream is cancelled. By
+	 * default, the inferences of the proof returned by
+	 * {@link #getProof(OWLAxiom)} are sent using the given {@link Executor}.
+	 * 
+	 * @param entailment
+	 *            the {@link OWLAxiom} for which the proof should be generated
+	 * @param subscriber
+	 *            the {@link InferenceSubscriber} to which the inferences
+	 *            should be sent; its method
+	 *            {@link InferenceSubscriber#onSubscribe(InferenceSubscription)}
+	 *            is called first
+	 * @param executor
+	 *            the {@link Executor} that runs blocking computations with
+	 *            this service one at a time
+	 * 
+	 * @see #streamsInferences()
+	 */
+	public void streamInferences(OWLAxiom entailment,
+			InferenceSubscriber<Inference<? extends OWLAxiom>> subscriber,
+			Executor executor) {
+		subscriber.onSubscribe(new BreadthFirstInferenceSubscription(this,
+				entailment, subscriber, executor));
+	}
+
 	/**
 	 * This method provides examples that explain inferences used in the proof
 	 * 
@@ -0,0 +1,108 @@
+package org.liveontologies.protege.explanation.proof;
+
+/*-
+ * #%L
+ * Protege Proof-Based Explanation
+ * $Id:$
+ * $HeadURL:$
+ * %%
+ * Copyright (C) 2014 - 2016 Live Ontologies Project
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAnnotation;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+
+public class AxiomOccurrenceIndexTest {
+
+	private static final int CLASSES_ = 12, ONTOLOGIES_ = 3,
+			OPERATIONS_ = 5000;
+
+	@Test
+	public void testRandomOccurrences() throws OWLOntologyCreationException {
+		OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+		OWLDataFactory factory = manager.getOWLDataFactory();
+		List<OWLOntology> ontologies = new ArrayList<OWLOntology>();
+		for (int i = 0; i < ONTOLOGIES_; i++) {
+			ontologies.add(manager
+					.createOntology(IRI.create("http://example.org/o" + i)));
+		}
+		List<OWLClass> classes = new ArrayList<OWLClass>();
+		for (int i = 0; i < CLASSES_; i++) {
+			classes.add(factory
+					.getOWLClass(IRI.create("http://example.org/C" + i)));
+		}
+		OWLAnnotation annotation = factory.getOWLAnnotation(
+				factory.getRDFSComment(), factory.getOWLLiteral("comment"));
+		// the expected content
+		ListMultimap<OWLAxiom, OWLAxiom> originalAxioms = ArrayListMultimap
+				.create();
+		ListMultimap<OWLAxiom, OWLOntology> axiomOccurrences = ArrayListMultimap
+				.create();
+		AxiomOccurrenceIndex index = new AxiomOccurrenceIndex();
+		Random random = new Random(42);
+		for (int op = 0; op < OPERATIONS_; op++) {
+			OWLAxiom axiom = factory.getOWLSubClassOfAxiom(
+					classes.get(random.nextInt(CLASSES_)),
+					classes.get(random.nextInt(CLASSES_)));
+			if (random.nextBoolean()) {
+				axiom = axiom.getAnnotatedAxiom(
+						Collections.singleton(annotation));
+			}
+			OWLAxiom key = axiom.getAxiomWithoutAnnotations();
+			OWLOntology ontology = ontologies
+					.get(random.nextInt(ONTOLOGIES_));
+			boolean isNew = !originalAxioms.containsKey(key);
+			originalAxioms.put(key, axiom);
+			axiomOccurrences.put(key, ontology);
+			assertEquals(isNew, index.add(axiom, key, ontology));
+			assertEquals(originalAxioms.get(key), index.getAxioms(key));
+			assertEquals(axiomOccurrences.get(key), index.getOntologies(key));
+			assertEquals(true, index.containsKey(key));
+		}
+		assertEquals(originalAxioms.keySet(),
+				new HashSet<OWLAxiom>(index.keySet()));
+		assertEquals(originalAxioms.keySet().size(), index.keySet().size());
+		for (OWLAxiom key : originalAxioms.keySet()) {
+			assertEquals(originalAxioms.get(key), index.getAxioms(key));
+			assertEquals(axiomOccurrences.get(key), index.getOntologies(key));
+		}
+		OWLAxiom missing = factory.getOWLSubClassOfAxiom(classes.get(0),
+				factory.getOWLThing());
+		assertEquals(false, index.containsKey(missing));
+		assertEquals(Collections.emptyList(), index.getAxioms(missing));
+		assertEquals(Collections.emptyList(), index.getOntologies(missing));
+	}
+
+}
@@ -0,0 +1,572 @@
+package org.liveontologies.protege.explanation.proof;
+
+/*-
+ * #%L
+ * Protege Proof-Based Explanation
+ * $Id:$
+ * $HeadURL:$
+ * %%
+ * Copyright (C) 2014 - 2016 Live Ontologies Project
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.AddAxiom;
+import org.semanticweb.owlapi.model.AddImport;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAnnotation;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLImportsDeclaration;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyChange;
+import org.semanticweb.owlapi.model.OWLOntologyChangeListener;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.model.RemoveAxiom;
+import org.semanticweb.owlapi.model.RemoveImport;
+import org.semanticweb.owlapi.model.parameters.Imports;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Sets;
+
+public class ImportsClosureRecordTest {
+
+	private static final int CLASSES_ = 6, ONTOLOGIES_ = 3, BATCHES_ = 300,
+			READERS_ = 3, PAIRS_ = 50;
+
+	private final OWLOntologyManager manager_ = OWLManager
+			.createOWLOntologyManager();
+
+	private final OWLDataFactory factory_ = manager_.getOWLDataFactory();
+
+	private final OWLAnnotation annotation_ = factory_.getOWLAnnotation(
+			factory_.getRDFSComment(), factory_.getOWLLiteral("comment"));
+
+	private final List<OWLOntology> ontologies_ = new ArrayList<OWLOntology>();
+
+	/**
+	 * the axioms without annotations that can occur in the ontologies
+	 */
+	private final List<OWLAxiom> keys_ = new ArrayList<OWLAxiom>();
+
+	private void init() throws OWLOntologyCreationException {
+		for (int i = 0; i < ONTOLOGIES_; i++) {
+			ontologies_.add(createOntology("o" + i));
+		}
+		// the first ontology imports the others
+		for (int i = 1; i < ONTOLOGIES_; i++) {
+			manager_.applyChange(new AddImport(ontologies_.get(0),
+					getImportOf(ontologies_.get(i))));
+		}
+		List<OWLClass> classes = new ArrayList<OWLClass>();
+		for (int i = 0; i < CLASSES_; i++) {
+			classes.add(factory_
+					.getOWLClass(IRI.create("http://example.org/C" + i)));
+		}
+		for (OWLClass sub : classes) {
+			for (OWLClass sup : classes) {
+				keys_.add(factory_.getOWLSubClassOfAxiom(sub, sup));
+			}
+		}
+	}
+
+	@Test
+	public void testLookupsDuringChanges() throws Exception {
+		init();
+		final ImportsClosureRecord record = new ImportsClosureRecord(
+				ontologies_.get(0));
+		manager_.addOntologyChangeListener(new OWLOntologyChangeListener() {
+			@Override
+			public void ontologiesChanged(
+					List<? extends OWLOntologyChange> changes) {
+				record.applyChanges(changes);
+			}
+		});
+		final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+		final Thread[] readers = new Thread[READERS_];
+		for (int i = 0; i < READERS_; i++) {
+			final Random random = new Random(i);
+			readers[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						while (!isInterrupted()) {
+							OWLAxiom key = keys_
+									.get(random.nextInt(keys_.size()));
+							record.getStatedAxiomsWithoutAnnotations()
+									.contains(key);
+							record.getHomeOntologies(key);
+							if (random.nextInt(200) == 0) {
+								// indexes all axioms
+								record.getStatedAxiomsWithoutAnnotations()
+										.size();
+							}
+						}
+					} catch (Throwable e) {
+						error.set(e);
+					}
+				}
+			};
+			readers[i].start();
+		}
+		Random random = new Random(42);
+		try {
+			for (int batch = 0; batch < BATCHES_; batch++) {
+				manager_.applyChanges(randomChanges(random));
+				for (OWLAxiom key : keys_) {
+					assertStated(record, key);
+				}
+			}
+		} finally {
+			for (Thread reader : readers) {
+				reader.interrupt();
+				reader.join();
+			}
+		}
+		assertEquals(null, error.get());
+	}
+
+	@Test
+	public void testIterationDuringChanges() throws Exception {
+		// the ontologies are locked while changed
+		OWLOntologyManager manager = OWLManager
+				.createConcurrentOWLOntologyManager();
+		OWLDataFactory factory = manager.getOWLDataFactory();
+		OWLOntology ontology = manager
+				.createOntology(IRI.create("http://example.org/o"));
+		final ImportsClosureRecord record = new ImportsClosureRecord(
+				ontology);
+		manager.addOntologyChangeListener(new OWLOntologyChangeListener() {
+			@Override
+			public void ontologiesChanged(
+					List<? extends OWLOntologyChange> changes) {
+				record.applyChanges(changes);
+			}
+		});
+		// exactly one axiom of every pair is stated
+		final List<OWLAxiom> first = new ArrayList<OWLAxiom>(),
+				second = new ArrayList<OWLAxiom>();
+		for (int i = 0; i < PAIRS_; i++) {
+			OWLClass c = factory
+					.getOWLClass(IRI.create("http://example.org/C" + i));
+			first.add(factory.getOWLSubClassOfAxiom(c,
+					factory.getOWLClass(IRI.create("http://example.org/A"))));
+			second.add(factory.getOWLSubClassOfAxiom(c,
+					factory.getOWLClass(IRI.create("http://example.org/B"))));
+			manager.addAxiom(ontology, first.get(i));
+		}
+		final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+		Thread reader = new Thread() {
+			@Override
+			public void run() {
+				try {
+					while (!isInterrupted()) {
+						// iterates over one snapshot
+						Set<OWLAxiom> stated = new HashSet<OWLAxiom>(
+								record.getStatedAxiomsWithoutAnnotations());
+						for (int i = 0; i < PAIRS_; i++) {
+							assertEquals(1,
+									(stated.contains(first.get(i)) ? 1 : 0)
+											+ (stated.contains(second.get(i))
+													? 1 : 0));
+						}
+					}
+				} catch (Throwable e) {
+					error.set(e);
+				}
+			}
+		};
+		reader.start();
+		try {
+			for (int batch = 0; batch < BATCHES_ && error.get() == null; batch++) {
+				List<OWLOntologyChange> changes = new ArrayList<OWLOntologyChange>();
+				for (int i = 0; i < PAIRS_; i++) {
+					OWLAxiom removed = first.get(i), added = second.get(i);
+					if (!ontology.containsAxiom(removed)) {
+						removed = second.get(i);
+						added = first.get(i);
+					}
+					changes.add(new RemoveAxiom(ontology, removed));
+					changes.add(new AddAxiom(ontology, added));
+				}
+				manager.applyChanges(changes);
+			}
+		} finally {
+			reader.interrupt();
+			reader.join();
+		}
+		assertEquals(null, error.get());
+	}
+
+	@Test
+	public void testChangesRetrievedBeforeApplied() throws Exception {
+		init();
+		OWLOntology ontology = ontologies_.get(0);
+		OWLAxiom added = keys_.get(0), removed = keys_.get(1);
+		manager_.addAxiom(ontology, removed);
+		ImportsClosureRecord record = new ImportsClosureRecord(ontology);
+		RecordingListener listener = new RecordingListener();
+		record.addListener(listener);
+		record.getStatedAxiomsWithoutAnnotations();
+		// a reader retrieves the axiom before the record is notified
+		List<OWLOntologyChange> changes = Collections
+				.<OWLOntologyChange> singletonList(
+						new AddAxiom(ontology, added));
+		manager_.applyChanges(changes);
+		record.getHomeOntologies(added);
+		assertEquals(true, record.applyChanges(changes));
+		listener.await();
+		assertEquals(Collections.singleton(added), listener.added_);
+		assertEquals(Collections.emptySet(), listener.removed_);
+		assertStated(record, added);
+		// the same for the removal
+		changes = Collections.<OWLOntologyChange> singletonList(
+				new RemoveAxiom(ontology, removed));
+		manager_.applyChanges(changes);
+		record.getHomeOntologies(removed);
+		assertEquals(true, record.applyChanges(changes));
+		listener.await();
+		assertEquals(Collections.emptySet(), listener.added_);
+		assertEquals(Collections.singleton(removed), listener.removed_);
+		assertStated(record, removed);
+	}
+
+	@Test
+	public void testImportAddedWithAxiom() throws Exception {
+		init();
+		OWLOntology imported = createOntology("imported");
+		manager_.addAxiom(imported, keys_.get(0));
+		ImportsClosureRecord record = createRecord(true);
+		RecordingListener listener = new RecordingListener();
+		record.addListener(listener);
+		// the axiom is added to the ontology before it is imported
+		assertChanges(record, listener, Arrays.<OWLOntologyChange> asList(
+				new AddAxiom(imported, keys_.get(1)),
+				new AddImport(ontologies_.get(0), getImportOf(imported)),
+				new AddAxiom(imported, keys_.get(2))));
+		assertEquals(new HashSet<OWLAxiom>(keys_.subList(0, 3)),
+				listener.added_);
+		assertEquals(Collections.emptySet(), listener.removed_);
+	}
+
+	@Test
+	public void testImportRemovedWithAxiomRemoval() throws Exception {
+		init();
+		OWLOntology root = ontologies_.get(0), kept = ontologies_.get(1),
+				removed = ontologies_.get(2);
+		manager_.addAxiom(kept, keys_.get(0));
+		manager_.addAxiom(removed, keys_.get(1));
+		manager_.addAxiom(removed, keys_.get(2));
+		manager_.addAxiom(removed, keys_.get(3));
+		// the axiom remains stated in the other ontology
+		manager_.addAxiom(root, keys_.get(3));
+		ImportsClosureRecord record = createRecord(true);
+		RecordingListener listener = new RecordingListener();
+		record.addListener(listener);
+		assertChanges(record, listener, Arrays.<OWLOntologyChange> asList(
+				new RemoveAxiom(removed, keys_.get(1)),
+				new RemoveImport(root, getImportOf(removed)),
+				new RemoveAxiom(kept, keys_.get(0))));
+		assertEquals(Collections.emptySet(), listener.added_);
+		assertEquals(new HashSet<OWLAxiom>(keys_.subList(0, 3)),
+				listener.removed_);
+	}
+
+	@Test
+	public void testAxiomInSeveralOntologies() throws Exception {
+		init();
+		OWLAxiom key = keys_.get(0), annotated = key
+				.getAnnotatedAxiom(Collections.singleton(annotation_));
+		ImportsClosureRecord record = createRecord(true);
+		RecordingListener listener = new RecordingListener();
+		record.addListener(listener);
+		assertChanges(record, listener,
+				Arrays.<OWLOntologyChange> asList(
+						new AddAxiom(ontologies_.get(0), key),
+						new AddAxiom(ontologies_.get(1), key),
+						new AddAxiom(ontologies_.get(2), annotated)));
+		assertEquals(Collections.singleton(key), listener.added_);
+		assertEquals(3, record.getHomeOntologies(key).size());
+		assertChanges(record, listener,
+				Collections.<OWLOntologyChange> singletonList(
+						new RemoveAxiom(ontologies_.get(0), key)));
+		assertChanges(record, listener,
+				Arrays.<OWLOntologyChange> asList(
+						new RemoveAxiom(ontologies_.get(1), key),
+						new RemoveAxiom(ontologies_.get(2), annotated)));
+		assertEquals(Collections.singleton(key), listener.removed_);
+	}
+
+	@Test
+	public void testRandomChangesWithImports() throws Exception {
+		init();
+		// initially imported by the second ontology but not by the first
+		OWLOntology nested = createOntology("nested");
+		manager_.applyChange(
+				new AddImport(ontologies_.get(1), getImportOf(nested)));
+		manager_.applyChange(new RemoveImport(ontologies_.get(0),
+				getImportOf(ontologies_.get(1))));
+		ontologies_.add(nested);
+		ImportsClosureRecord record = createRecord(false);
+		RecordingListener listener = new RecordingListener();
+		record.addListener(listener);
+		Random random = new Random(5);
+		for (int batch = 0; batch < BATCHES_; batch++) {
+			List<OWLOntologyChange> changes = randomChanges(random);
+			int importChanges = random.nextInt(3);
+			for (int i = 0; i < importChanges; i++) {
+				// some ontology (not the root) imports or stops importing
+				// some other ontology (not the root)
+				OWLOntology importing = ontologies_
+						.get(random.nextInt(ontologies_.size() - 1));
+				OWLOntology imported = ontologies_
+						.get(1 + random.nextInt(ontologies_.size() - 1));
+				OWLImportsDeclaration declaration = getImportOf(imported);
+				if (importing == imported) {
+					continue;
+				}
+				// else
+				if (importing.getImportsDeclarations()
+						.contains(declaration)) {
+					changes.add(random.nextInt(changes.size() + 1),
+							new RemoveImport(importing, declaration));
+				} else {
+					changes.add(random.nextInt(changes.size() + 1),
+							new AddImport(importing, declaration));
+				}
+			}
+			// the axioms are indexed only in the end; before that only
+			// some keys are memoized
+			assertChanges(record, listener, changes, batch == BATCHES_ - 1);
+			for (int i = 0; i < 4; i++) {
+				assertStated(record, keys_.get(random.nextInt(keys_.size())));
+			}
+		}
+	}
+
+	private OWLOntology createOntology(String name)
+			throws OWLOntologyCreationException {
+		return manager_
+				.createOntology(IRI.create("http://example.org/" + name));
+	}
+
+	private OWLImportsDeclaration getImportOf(OWLOntology ontology) {
+		return factory_.getOWLImportsDeclaration(
+				ontology.getOntologyID().getOntologyIRI().get());
+	}
+
+	/**
+	 * @param index
+	 *            whether all axioms should be indexed
+	 * @return the record for the first ontology that is notified about the
+	 *         changes of the ontologies and whose imports closure is
+	 *         retrieved
+	 */
+	private ImportsClosureRecord createRecord(boolean index) {
+		final ImportsClosureRecord record = new ImportsClosureRecord(
+				ontologies_.get(0));
+		manager_.addOntologyChangeListener(new OWLOntologyChangeListener() {
+			@Override
+			public void ontologiesChanged(
+					List<? extends OWLOntologyChange> changes) {
+				record.applyChanges(changes);
+			}
+		});
+		Set<OWLAxiom> stated = record.getStatedAxiomsWithoutAnnotations();
+		if (index) {
+			stated.size();
+		}
+		return record;
+	}
+
+	private void assertChanges(ImportsClosureRecord record,
+			RecordingListener listener, List<OWLOntologyChange> changes)
+			throws Exception {
+		assertChanges(record, listener, changes, true);
+	}
+
+	/**
+	 * Applies the given changes in one batch and checks the stated axioms of
+	 * the given record and the changes reported to the given listener
+	 * against the axioms of the imports closure before and after the
+	 * changes
+	 * 
+	 * @param record
+	 * @param listener
+	 * @param changes
+	 * @param checkAll
+	 *            whether all stated axioms of the record are checked;
+	 *            this indexes all axioms and memoizes all keys
+	 * @throws Exception
+	 */
+	private void assertChanges(ImportsClosureRecord record,
+			RecordingListener listener, List<OWLOntologyChange> changes,
+			boolean checkAll) throws Exception {
+		Set<OWLAxiom> before = getStated(record.getRootOntology());
+		int version = record.getVersion();
+		listener.added_ = null;
+		listener.removed_ = null;
+		manager_.applyChanges(changes);
+		listener.await();
+		Set<OWLAxiom> after = getStated(record.getRootOntology());
+		if (listener.added_ == null) {
+			// not notified
+			assertEquals(version, record.getVersion());
+			listener.added_ = Collections.emptySet();
+			listener.removed_ = Collections.emptySet();
+		} else {
+			assertEquals(record.getVersion(), listener.version_);
+		}
+		// the changes of the stated axioms are reported
+		assertTrue(listener.added_
+				.containsAll(Sets.difference(after, before)));
+		assertTrue(listener.removed_
+				.containsAll(Sets.difference(before, after)));
+		// the reported axioms are stated now or were stated before
+		assertTrue(after.containsAll(listener.added_));
+		assertTrue(before.containsAll(listener.removed_));
+		if (!checkAll) {
+			return;
+		}
+		// else
+		assertEquals(after, new HashSet<OWLAxiom>(
+				record.getStatedAxiomsWithoutAnnotations()));
+		for (OWLAxiom key : keys_) {
+			assertStated(record, key);
+		}
+	}
+
+	/**
+	 * @param ontology
+	 * @return the axioms without annotations in the imports closure of the
+	 *         given ontology
+	 */
+	private static Set<OWLAxiom> getStated(OWLOntology ontology) {
+		Set<OWLAxiom> result = new HashSet<OWLAxiom>();
+		for (OWLOntology member : ontology.getImportsClosure()) {
+			for (OWLAxiom axiom : member.getAxioms()) {
+				result.add(axiom.getAxiomWithoutAnnotations());
+			}
+		}
+		return result;
+	}
+
+	private List<OWLOntologyChange> randomChanges(Random random) {
+		List<OWLOntologyChange> result = new ArrayList<OWLOntologyChange>();
+		int count = 1 + random.nextInt(4);
+		for (int i = 0; i < count; i++) {
+			OWLAxiom axiom = keys_.get(random.nextInt(keys_.size()));
+			if (random.nextBoolean()) {
+				axiom = axiom.getAnnotatedAxiom(
+						Collections.singleton(annotation_));
+			}
+			OWLOntology ontology = ontologies_
+					.get(random.nextInt(ONTOLOGIES_));
+			if (ontology.containsAxiom(axiom)) {
+				result.add(new RemoveAxiom(ontology, axiom));
+			} else {
+				result.add(new AddAxiom(ontology, axiom));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Records the last notification about the changes of the stated axioms
+	 */
+	static class RecordingListener
+			implements ImportsClosureRecord.ChangeListener {
+
+		Set<OWLAxiom> added_, removed_;
+
+		int version_;
+
+		@Override
+		public void statedAxiomsChanged(Set<OWLAxiom> added,
+				Set<OWLAxiom> removed, int version) {
+			this.added_ = added;
+			this.removed_ = removed;
+			this.version_ = version;
+		}
+
+		@Override
+		public void importsClosureChanged() {
+			// not expected
+			throw new AssertionError();
+		}
+
+		/**
+		 * Waits until the notifications are delivered
+		 * 
+		 * @throws Exception
+		 */
+		void await() throws Exception {
+			SwingUtilities.invokeAndWait(new Runnable() {
+				@Override
+				public void run() {
+					// nothing to do
+				}
+			});
+		}
+
+	}
+
+	/**
+	 * Checks the occurrences of the given axiom in the given record against
+	 * the ontologies
+	 * 
+	 * @param record
+	 * @param key
+	 *            an axiom without annotations
+	 */
+	private static void assertStated(ImportsClosureRecord record,
+			OWLAxiom key) {
+		Multiset<OWLAxiom> expectedAxioms = HashMultiset.create();
+		Multiset<OWLOntology> expectedOntologies = HashMultiset.create();
+		for (OWLOntology ontology : record.getRootOntology()
+				.getImportsClosure()) {
+			for (OWLAxiom axiom : ontology.getAxiomsIgnoreAnnotations(key,
+					Imports.EXCLUDED)) {
+				expectedAxioms.add(axiom);
+				expectedOntologies.add(ontology);
+			}
+		}
+		assertEquals(key.toString(), expectedAxioms,
+				HashMultiset.create(record.getMatchingAxioms(key)));
+		assertEquals(key.toString(), expectedOntologies,
+				HashMultiset.create(record.getHomeOntologies(key)));
+		assertEquals(key.toString(), !expectedAxioms.isEmpty(),
+				record.getStatedAxiomsWithoutAnnotations().contains(key));
+	}
+
+}
@@ -0,0 +1,97 @@
+package org.liveontologies.protege.explanation.proof;
+
+/*-
+ * #%L
+ * Protege Proof-Based Explanation
+ * $Id:$
+ * $HeadURL:$
+ * %%
+ * Copyright (C) 2014 - 2016 Live Ontologies Project
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class MembershipRecordingSetTest {
+
+	private final Set<Integer> delegate_ = new HashSet<Integer>(
+			Arrays.asList(1, 2, 3));
+
+	private final MembershipRecordingSet<Integer> set_ = new MembershipRecordingSet<Integer>(
+			delegate_);
+
+	@Test
+	public void testIsAffectedBy() {
+		assertEquals(false, set_.isAffectedBy(Arrays.asList(1, 4)));
+		assertEquals(true, set_.contains(1));
+		assertEquals(false, set_.contains(4));
+		assertEquals(2, set_.getTestedCount());
+		// both the present and the absent tested elements count
+		assertEquals(true, set_.isAffectedBy(Collections.singleton(1)));
+		assertEquals(true, set_.isAffectedBy(Collections.singleton(4)));
+		assertEquals(false, set_.isAffectedBy(Arrays.asList(2, 5)));
+		assertEquals(false, set_.isAffectedBy(Collections.emptySet()));
+		// iteration may depend on every element
+		set_.iterator();
+		assertEquals(true, set_.isAffectedBy(Collections.emptySet()));
+	}
+
+	@Test
+	public void testSizeAffects() {
+		set_.size();
+		assertEquals(true, set_.isAffectedBy(Collections.singleton(5)));
+		assertEquals(false, set_.agreesWith(delegate_));
+	}
+
+	@Test
+	public void testAgreesWith() {
+		assertEquals(true, set_.agreesWith(Collections.emptySet()));
+		set_.contains(1);
+		set_.contains(4);
+		assertEquals(true, set_.agreesWith(delegate_));
+		// only the tested elements are compared
+		assertEquals(true,
+				set_.agreesWith(new HashSet<Integer>(Arrays.asList(1, 5))));
+		assertEquals(false,
+				set_.agreesWith(new HashSet<Integer>(Arrays.asList(2, 3))));
+		assertEquals(false, set_.agreesWith(
+				new HashSet<Integer>(Arrays.asList(1, 4))));
+		set_.iterator();
+		assertEquals(false, set_.agreesWith(delegate_));
+	}
+
+	@Test
+	public void testFirstResultsKept() {
+		assertEquals(true, set_.contains(1));
+		assertEquals(false, set_.contains(4));
+		delegate_.remove(1);
+		delegate_.add(4);
+		assertEquals(true, set_.contains(1));
+		assertEquals(false, set_.contains(4));
+		assertEquals(2, set_.getTestedCount());
+		// compared with the recorded results
+		assertEquals(false, set_.agreesWith(delegate_));
+		assertEquals(true,
+				set_.agreesWith(new HashSet<Integer>(Arrays.asList(1))));
+	}
+
+}
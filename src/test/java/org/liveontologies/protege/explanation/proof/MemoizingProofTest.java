@@ -0,0 +1,151 @@
+package org.liveontologies.protege.explanation.proof;
+
+/*-
+ * #%L
+ * Protege Proof-Based Explanation
+ * $Id:$
+ * $HeadURL:$
+ * %%
+ * Copyright (C) 2014 - 2016 Live Ontologies Project
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.liveontologies.puli.BaseProof;
+import org.liveontologies.puli.DynamicProof;
+import org.liveontologies.puli.Inference;
+import org.liveontologies.puli.Inferences;
+
+public class MemoizingProofTest {
+
+	private final CountingProof delegate_ = new CountingProof();
+
+	private final MemoizingProof<Inference<Integer>> proof_ = new MemoizingProof<Inference<Integer>>(
+			delegate_);
+
+	@Test
+	public void testMemoized() {
+		Inference<Integer> inference = createInference(0, 1);
+		delegate_.produce(inference);
+		assertEquals(Collections.singletonList(inference),
+				proof_.getInferences(0));
+		assertEquals(Collections.singletonList(inference),
+				proof_.getInferences(0));
+		assertEquals(Collections.emptyList(), proof_.getInferences(1));
+		assertEquals(Collections.emptyList(), proof_.getInferences(1));
+		assertEquals(2, delegate_.requests_);
+	}
+
+	@Test
+	public void testRefetchedAfterChange() {
+		final Inference<Integer> first = createInference(0, 1),
+				second = createInference(0, 2);
+		delegate_.produce(first);
+		assertEquals(Collections.singletonList(first),
+				proof_.getInferences(0));
+		final List<Collection<? extends Inference<Integer>>> notified = new ArrayList<Collection<? extends Inference<Integer>>>();
+		proof_.addListener(new DynamicProof.ChangeListener() {
+			@Override
+			public void inferencesChanged() {
+				// the memoized inferences are already discarded
+				notified.add(proof_.getInferences(0));
+			}
+		});
+		delegate_.produce(second);
+		assertEquals(1, notified.size());
+		assertEquals(Arrays.asList(first, second), notified.get(0));
+		assertEquals(2, delegate_.requests_);
+		// memoized again
+		assertEquals(Arrays.asList(first, second), proof_.getInferences(0));
+		assertEquals(2, delegate_.requests_);
+	}
+
+	@Test
+	public void testChangedWhileRetrieved() {
+		Inference<Integer> first = createInference(0, 1),
+				second = createInference(0, 2);
+		delegate_.produce(first);
+		delegate_.producedWhileRetrieved_ = second;
+		// the inferences before the change are returned but not memoized
+		assertEquals(Collections.singletonList(first),
+				proof_.getInferences(0));
+		assertEquals(Arrays.asList(first, second), proof_.getInferences(0));
+		assertEquals(Arrays.asList(first, second), proof_.getInferences(0));
+		assertEquals(2, delegate_.requests_);
+	}
+
+	@Test
+	public void testDispose() {
+		final int[] notifications = { 0 };
+		proof_.addListener(new DynamicProof.ChangeListener() {
+			@Override
+			public void inferencesChanged() {
+				notifications[0]++;
+			}
+		});
+		proof_.getInferences(0);
+		delegate_.produce(createInference(0, 1));
+		assertEquals(1, notifications[0]);
+		proof_.getInferences(0);
+		proof_.dispose();
+		delegate_.produce(createInference(0, 2));
+		assertEquals(1, notifications[0]);
+	}
+
+	private static Inference<Integer> createInference(Integer conclusion,
+			Integer premise) {
+		return Inferences.create("inference", conclusion,
+				Collections.singletonList(premise));
+	}
+
+	/**
+	 * Counts the requests for inferences and can change the inferences while
+	 * they are retrieved
+	 */
+	private static class CountingProof extends BaseProof<Inference<Integer>> {
+
+		int requests_ = 0;
+
+		/**
+		 * if not {@code null}, produced after the inferences are retrieved
+		 * but before they are returned
+		 */
+		Inference<Integer> producedWhileRetrieved_ = null;
+
+		@Override
+		public Collection<? extends Inference<Integer>> getInferences(
+				Object conclusion) {
+			requests_++;
+			List<Inference<Integer>> result = new ArrayList<Inference<Integer>>(
+					super.getInferences(conclusion));
+			if (producedWhileRetrieved_ != null) {
+				Inference<Integer> inference = producedWhileRetrieved_;
+				producedWhileRetrieved_ = null;
+				produce(inference);
+			}
+			return result;
+		}
+
+	}
+
+}
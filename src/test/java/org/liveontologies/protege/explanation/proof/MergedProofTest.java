@@ -0,0 +1,122 @@
+package org.liveontologies.protege.explanation.proof;
+
+/*-
+ * #%L
+ * Protege Proof-Based Explanation
+ * $Id:$
+ * $HeadURL:$
+ * %%
+ * Copyright (C) 2014 - 2016 Live Ontologies Project
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.liveontologies.puli.BaseProof;
+import org.liveontologies.puli.DynamicProof;
+import org.liveontologies.puli.Inference;
+import org.liveontologies.puli.Inferences;
+
+public class MergedProofTest {
+
+	private final DisposableProof first_ = new DisposableProof(),
+			second_ = new DisposableProof();
+
+	private final MergedProof<Inference<Integer>, String> proof_ = new MergedProof<Inference<Integer>, String>(
+			Arrays.asList(first_, second_), Arrays.asList("first", "second"));
+
+	@Test
+	public void testDeduplicatedByPremises() {
+		Inference<Integer> a = create("a", 0, 1, 2), b = create("b", 0, 2, 1),
+				c = create("c", 0, 1, 2), d = create("d", 0, 3),
+				e = create("e", 1, 3);
+		second_.produce(c);
+		second_.produce(d);
+		first_.produce(a);
+		first_.produce(b);
+		second_.produce(e);
+		// the inference of the first proof is kept
+		assertEquals(Arrays.asList(a, b, d), proof_.getInferences(0));
+		assertEquals(Collections.singletonList(e), proof_.getInferences(1));
+		assertEquals(Collections.emptyList(), proof_.getInferences(2));
+		assertEquals("first", proof_.getSource(a));
+		assertEquals("first", proof_.getSource(b));
+		assertEquals("second", proof_.getSource(d));
+		assertEquals("second", proof_.getSource(e));
+		// not returned
+		assertNull(proof_.getSource(c));
+	}
+
+	@Test
+	public void testEqualInferences() {
+		Inference<Integer> a = create("a", 0, 1), copy = create("a", 0, 1);
+		first_.produce(a);
+		first_.produce(copy);
+		second_.produce(copy);
+		List<Inference<Integer>> inferences = new ArrayList<Inference<Integer>>(
+				proof_.getInferences(0));
+		assertEquals(1, inferences.size());
+		assertSame(a, inferences.get(0));
+	}
+
+	@Test
+	public void testChangesPropagated() {
+		final int[] notifications = { 0 };
+		proof_.addListener(new DynamicProof.ChangeListener() {
+			@Override
+			public void inferencesChanged() {
+				notifications[0]++;
+			}
+		});
+		proof_.getInferences(0);
+		second_.produce(create("a", 0, 1));
+		assertEquals(1, notifications[0]);
+		assertEquals(1, proof_.getInferences(0).size());
+		first_.produce(create("b", 0, 1));
+		assertEquals(2, notifications[0]);
+		assertEquals("first",
+				proof_.getSource(proof_.getInferences(0).iterator().next()));
+		proof_.dispose();
+		assertEquals(true, first_.disposed_);
+		assertEquals(true, second_.disposed_);
+		first_.produce(create("c", 0, 2));
+		assertEquals(2, notifications[0]);
+	}
+
+	private static Inference<Integer> create(String name, Integer conclusion,
+			Integer... premises) {
+		return Inferences.create(name, conclusion, Arrays.asList(premises));
+	}
+
+	private static class DisposableProof extends BaseProof<Inference<Integer>> {
+
+		boolean disposed_ = false;
+
+		@Override
+		public void dispose() {
+			disposed_ = true;
+		}
+
+	}
+
+}
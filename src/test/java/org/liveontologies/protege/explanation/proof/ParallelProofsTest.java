@@ -0,0 +1,140 @@
+package org.liveontologies.protege.explanation.proof;
+
+/*-
+ * #%L
+ * Protege Proof-Based Explanation
+ * $Id:$
+ * $HeadURL:$
+ * %%
+ * Copyright (C) 2014 - 2016 Live Ontologies Project
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.liveontologies.puli.BaseProof;
+import org.liveontologies.puli.Inference;
+import org.liveontologies.puli.Inferences;
+import org.liveontologies.puli.Producer;
+import org.liveontologies.puli.Proof;
+import org.liveontologies.puli.Proofs;
+import org.liveontologies.puli.pinpointing.InterruptMonitor;
+
+public class ParallelProofsTest {
+
+	private static final int ROUNDS_ = 200;
+
+	@Test
+	public void testEssentialConclusions() {
+		Random random = new Random(42);
+		for (int round = 0; round < ROUNDS_; round++) {
+			BaseProof<Inference<Integer>> proof = randomProof(random);
+			Set<Integer> expected = getEssentialConclusions(proof, 0);
+			assertEquals(expected, CancellableProofs.getEssentialConclusions(
+					proof, 0, InterruptMonitor.DUMMY));
+			assertEquals(expected, ParallelProofs.getEssentialConclusions(
+					proof, 0, InterruptMonitor.DUMMY));
+		}
+	}
+
+	@Test
+	public void testPrune() {
+		Random random = new Random(7);
+		for (int round = 0; round < ROUNDS_; round++) {
+			BaseProof<Inference<Integer>> proof = randomProof(random);
+			assertEquals(
+					getInferences(CancellableProofs.prune(proof, 0,
+							InterruptMonitor.DUMMY)),
+					getInferences(ParallelProofs.prune(proof, 0,
+							InterruptMonitor.DUMMY)));
+		}
+	}
+
+	/**
+	 * @param proof
+	 * @param goal
+	 * @return the conclusions used in the proof of the goal such that the goal
+	 *         is not derivable after removing the inferences that use or
+	 *         derive the conclusion
+	 */
+	static Set<Integer> getEssentialConclusions(
+			final Proof<Inference<Integer>> proof, Integer goal) {
+		Set<Integer> result = new HashSet<Integer>();
+		for (final Integer candidate : Proofs.unfoldRecursively(proof, goal,
+				Producer.Dummy.<Inference<Integer>> get())) {
+			Proof<Inference<Integer>> blocked = new Proof<Inference<Integer>>() {
+				@Override
+				public Collection<? extends Inference<Integer>> getInferences(
+						Object conclusion) {
+					List<Inference<Integer>> result = new ArrayList<Inference<Integer>>();
+					if (candidate.equals(conclusion)) {
+						return result;
+					}
+					// else
+					for (Inference<Integer> inf : proof
+							.getInferences(conclusion)) {
+						if (!inf.getPremises().contains(candidate)) {
+							result.add(inf);
+						}
+					}
+					return result;
+				}
+			};
+			if (!Proofs.isDerivable(blocked, goal)) {
+				result.add(candidate);
+			}
+		}
+		return result;
+	}
+
+	static BaseProof<Inference<Integer>> randomProof(Random random) {
+		BaseProof<Inference<Integer>> result = new BaseProof<Inference<Integer>>();
+		int conclusionCount = 1 + random.nextInt(40);
+		int inferenceCount = random.nextInt(3 * conclusionCount);
+		for (int i = 0; i < inferenceCount; i++) {
+			int conclusion = random.nextInt(conclusionCount);
+			int premiseCount = random.nextInt(4);
+			List<Integer> premises = new ArrayList<Integer>(premiseCount);
+			for (int j = 0; j < premiseCount; j++) {
+				premises.add(random.nextInt(conclusionCount));
+			}
+			result.produce(Inferences.create(
+					premiseCount == 0 && random.nextBoolean() ? "asserted"
+							: "inference",
+					conclusion, premises));
+		}
+		return result;
+	}
+
+	static Set<Inference<?>> getInferences(Proof<?> proof) {
+		final Set<Inference<?>> result = new HashSet<Inference<?>>();
+		Proofs.unfoldRecursively(proof, 0, new Producer<Inference<?>>() {
+			@Override
+			public void produce(Inference<?> inference) {
+				result.add(inference);
+			}
+		});
+		return result;
+	}
+
+}
@@ -0,0 +1,355 @@
+package org.liveontologies.protege.explanation.proof;
+
+/*-
+ * #%L
+ * Protege Proof-Based Explanation
+ * $Id:$
+ * $HeadURL:$
+ * %%
+ * Copyright (C) 2014 - 2016 Live Ontologies Project
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.Test;
+import org.liveontologies.protege.explanation.proof.service.ProofService;
+import org.liveontologies.puli.BaseProof;
+import org.liveontologies.puli.DynamicProof;
+import org.liveontologies.puli.Inference;
+import org.liveontologies.puli.Inferences;
+import org.liveontologies.puli.ProofNode;
+import org.liveontologies.puli.ProofNodes;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+
+public class ProofCacheTest {
+
+	/**
+	 * more than the maximal number of entries of the cache
+	 */
+	private static final int ENTRIES_ = 65;
+
+	/**
+	 * more than a half of the maximal total weight of the cache
+	 */
+	private static final int WEIGHT_ = 250001;
+
+	private static final Executor DIRECT_ = new Executor() {
+		@Override
+		public void execute(Runnable command) {
+			command.run();
+		}
+	};
+
+	private final OWLOntologyManager manager_ = OWLManager
+			.createOWLOntologyManager();
+
+	private final OWLDataFactory factory_ = manager_.getOWLDataFactory();
+
+	private final ProofCache cache_ = new ProofCache();
+
+	private final RecordingService service_ = new RecordingService();
+
+	private final ImportsClosureRecord record_;
+
+	public ProofCacheTest() throws Exception {
+		service_.setup(null, "test", "Test");
+		record_ = new ImportsClosureRecord(manager_.createOntology());
+	}
+
+	@Test
+	public void testReuse() throws Exception {
+		ProofCache.Entry entry = acquire(0);
+		assertSame(entry, acquire(0));
+		assertEquals(1, service_.proofs_.size());
+		assertNotSame(entry, acquire(1));
+		assertEquals(2, service_.proofs_.size());
+		// a different record
+		ImportsClosureRecord other = new ImportsClosureRecord(
+				manager_.createOntology());
+		assertNotSame(entry, cache_.acquireAsync(service_, getAxiom(0),
+				other, DIRECT_).get());
+		assertEquals(3, service_.proofs_.size());
+	}
+
+	@Test
+	public void testHitsAndMisses() throws Exception {
+		ProofCache.Entry entry = acquire(0);
+		assertNull(cache_.getProofRoot(entry, 1, false));
+		assertEquals(0, cache_.getHitCount());
+		assertEquals(1, cache_.getMissCount());
+		ProofNode<OWLAxiom> root = createRoot(0);
+		MembershipRecordingSet<OWLAxiom> stated = createStated(3);
+		cache_.putProofRoot(entry, root, stated, 1, false);
+		assertSame(root, cache_.getProofRoot(entry, 1, false));
+		assertSame(stated, cache_.getStatedAxioms(entry));
+		assertEquals(1, cache_.getHitCount());
+		// other parameters
+		assertNull(cache_.getProofRoot(entry, 2, false));
+		assertNull(cache_.getProofRoot(entry, 1, true));
+		assertEquals(1, cache_.getHitCount());
+		assertEquals(3, cache_.getMissCount());
+		// valid for the next version
+		cache_.revalidateProofRoot(entry, root, 2);
+		assertSame(root, cache_.getProofRoot(entry, 2, false));
+		assertEquals(2, cache_.getHitCount());
+		// not for a different root
+		cache_.revalidateProofRoot(entry, createRoot(0), 3);
+		assertNull(cache_.getProofRoot(entry, 3, false));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEvicted() throws Exception {
+		List<ProofCache.Entry> entries = new ArrayList<ProofCache.Entry>();
+		for (int i = 0; i < ENTRIES_ - 1; i++) {
+			entries.add(acquire(i));
+		}
+		// the first entry is used again
+		cache_.release(acquire(0));
+		for (ProofCache.Entry entry : entries) {
+			cache_.release(entry);
+		}
+		assertEquals(0, cache_.getEvictionCount());
+		cache_.release(acquire(ENTRIES_ - 1));
+		assertEquals(1, cache_.getEvictionCount());
+		// only the second proof is evicted and disposed
+		assertEquals(Collections.singleton(1), getDisposed());
+		assertSame(entries.get(0), acquire(0));
+		assertNotSame(entries.get(1), acquire(1));
+		assertEquals(ENTRIES_ + 1, service_.proofs_.size());
+	}
+
+	@Test
+	public void testDisposedWhenReleased() throws Exception {
+		ProofCache.Entry used = acquire(0);
+		for (int i = 1; i < ENTRIES_; i++) {
+			cache_.release(acquire(i));
+		}
+		assertEquals(1, cache_.getEvictionCount());
+		// evicted but still used
+		assertEquals(Collections.emptySet(), getDisposed());
+		cache_.putProofRoot(used, createRoot(0), createStated(1), 1, false);
+		assertNull(cache_.getProofRoot(used, 1, false));
+		cache_.release(used);
+		assertEquals(Collections.singleton(0), getDisposed());
+	}
+
+	@Test
+	public void testHeavyRootsEvicted() throws Exception {
+		ProofCache.Entry first = acquire(0), second = acquire(1),
+				third = acquire(2);
+		cache_.release(first);
+		cache_.release(second);
+		cache_.putProofRoot(third, createRoot(2), createStated(1), 1, false);
+		cache_.putProofRoot(first, createRoot(0), createStated(WEIGHT_), 1,
+				false);
+		assertEquals(0, cache_.getEvictionCount());
+		cache_.putProofRoot(second, createRoot(1), createStated(WEIGHT_), 1,
+				false);
+		// the least recently used entries are evicted until the weight
+		// is within the limit
+		assertEquals(1, cache_.getEvictionCount());
+		assertEquals(Collections.singleton(0), getDisposed());
+		assertNotSame(first, acquire(0));
+		assertSame(second, acquire(1));
+		// the weight of a replaced root is not counted anymore
+		cache_.putProofRoot(second, createRoot(1), createStated(1), 2, false);
+		cache_.putProofRoot(acquire(0), createRoot(0), createStated(WEIGHT_),
+				1, false);
+		assertEquals(1, cache_.getEvictionCount());
+	}
+
+	@Test
+	public void testInvalidatedWhenInferencesChange() throws Exception {
+		ProofCache.Entry entry = acquire(0);
+		DynamicProof<Inference<? extends OWLAxiom>> proof = entry.getProof();
+		ProofNode<OWLAxiom> root = createRoot(0);
+		cache_.putProofRoot(entry, root, createStated(1), 1, false);
+		assertSame(root, cache_.getProofRoot(entry, 1, false));
+		proof.getInferences(getAxiom(0));
+		service_.proofs_.get(0).produce(Inferences.create("inference",
+				getAxiom(0), Collections.singletonList(getAxiom(1))));
+		assertNull(cache_.getProofRoot(entry, 1, false));
+		assertNull(cache_.getStatedAxioms(entry));
+		assertEquals(1, proof.getInferences(getAxiom(0)).size());
+	}
+
+	@Test
+	public void testStreamRestartedWhenInferencesChange() throws Exception {
+		StreamingService service = new StreamingService();
+		service.setup(null, "streaming", "Streaming");
+		ProofCache.Entry entry = cache_.acquireAsync(service, getAxiom(0),
+				record_, DIRECT_).get();
+		DynamicProof<Inference<? extends OWLAxiom>> proof = entry.getProof();
+		assertEquals(0, proof.getInferences(getAxiom(0)).size());
+		assertTrue(entry.isProofComplete());
+		ProofNode<OWLAxiom> root = createRoot(0);
+		cache_.putProofRoot(entry, root, createStated(1), 1, false);
+		// the source proof changes after the stream is complete
+		service.proofs_.get(0).produce(Inferences.create("inference",
+				getAxiom(0), Collections.singletonList(getAxiom(1))));
+		assertNull(cache_.getProofRoot(entry, 1, false));
+		assertEquals(1, proof.getInferences(getAxiom(0)).size());
+		assertTrue(entry.isProofComplete());
+		assertEquals(Collections.emptySet(), getDisposed(service));
+		cache_.release(entry);
+		cache_.purge(record_);
+		assertEquals(Collections.singleton(0), getDisposed(service));
+	}
+
+	@Test
+	public void testPurge() throws Exception {
+		ImportsClosureRecord other = new ImportsClosureRecord(
+				manager_.createOntology());
+		ProofCache.Entry purged = acquire(0), kept = cache_
+				.acquireAsync(service_, getAxiom(0), other, DIRECT_).get();
+		cache_.release(purged);
+		cache_.purge(record_);
+		assertEquals(Collections.singleton(0), getDisposed());
+		assertSame(kept, cache_
+				.acquireAsync(service_, getAxiom(0), other, DIRECT_).get());
+		assertNotSame(purged, acquire(0));
+	}
+
+	private ProofCache.Entry acquire(int i) throws Exception {
+		return cache_.acquireAsync(service_, getAxiom(i), record_, DIRECT_)
+				.get();
+	}
+
+	private OWLAxiom getAxiom(int i) {
+		return factory_.getOWLSubClassOfAxiom(
+				factory_.getOWLClass(IRI.create("http://example.org/A" + i)),
+				factory_.getOWLClass(IRI.create("http://example.org/B")));
+	}
+
+	private ProofNode<OWLAxiom> createRoot(int i) {
+		return ProofNodes.create(new BaseProof<Inference<OWLAxiom>>(),
+				getAxiom(i));
+	}
+
+	/**
+	 * @param weight
+	 * @return the stated axioms for which the given number of membership
+	 *         tests were made
+	 */
+	private static MembershipRecordingSet<OWLAxiom> createStated(int weight) {
+		MembershipRecordingSet<OWLAxiom> result = new MembershipRecordingSet<OWLAxiom>(
+				Collections.<OWLAxiom> emptySet());
+		// the weight of the root is one more
+		for (int i = 1; i < weight; i++) {
+			result.contains(i);
+		}
+		return result;
+	}
+
+	/**
+	 * @return the numbers of the obtained proofs that were disposed
+	 */
+	private HashSet<Integer> getDisposed() {
+		return getDisposed(service_);
+	}
+
+	/**
+	 * @param service
+	 * @return the numbers of the proofs obtained from the given service that
+	 *         were disposed
+	 */
+	private static HashSet<Integer> getDisposed(RecordingService service) {
+		HashSet<Integer> result = new HashSet<Integer>();
+		for (int i = 0; i < service.proofs_.size(); i++) {
+			if (service.proofs_.get(i).disposed_) {
+				result.add(i);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Provides empty proofs and records them
+	 */
+	private static class RecordingService extends ProofService {
+
+		final List<RecordingProof> proofs_ = new ArrayList<RecordingProof>();
+
+		@Override
+		public void initialise() throws Exception {
+			// nothing to do
+		}
+
+		@Override
+		public boolean hasProof(OWLAxiom entailment) {
+			return true;
+		}
+
+		@Override
+		public DynamicProof<Inference<? extends OWLAxiom>> getProof(
+				OWLAxiom entailment) {
+			RecordingProof result = new RecordingProof();
+			proofs_.add(result);
+			return result;
+		}
+
+		@Override
+		public Inference<? extends OWLAxiom> getExample(
+				Inference<? extends OWLAxiom> inference) {
+			return null;
+		}
+
+		@Override
+		public void dispose() {
+			// nothing to do
+		}
+
+	}
+
+	/**
+	 * Streams the inferences of the recorded proofs
+	 */
+	private static class StreamingService extends RecordingService {
+
+		@Override
+		public boolean streamsInferences() {
+			return true;
+		}
+
+	}
+
+	private static class RecordingProof
+			extends BaseProof<Inference<? extends OWLAxiom>> {
+
+		boolean disposed_ = false;
+
+		@Override
+		public void dispose() {
+			disposed_ = true;
+		}
+
+	}
+
+}
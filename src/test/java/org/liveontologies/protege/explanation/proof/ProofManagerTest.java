@@ -0,0 +1,87 @@
+package org.liveontologies.protege.explanation.proof;
+
+/*-
+ * #%L
+ * Protege Proof-Based Explanation
+ * $Id:$
+ * $HeadURL:$
+ * %%
+ * Copyright (C) 2014 - 2016 Live Ontologies Project
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class ProofManagerTest {
+
+	private final Set<Integer> none_ = Collections.emptySet(),
+			tested_ = Collections.singleton(1),
+			untested_ = Collections.singleton(2);
+
+	private final MembershipRecordingSet<Integer> stated_ = new MembershipRecordingSet<Integer>(
+			new HashSet<Integer>(tested_));
+
+	@Test
+	public void testNextVersion() {
+		stated_.contains(1);
+		assertEquals(true, ProofManager.remainsValid(stated_, 3, untested_,
+				none_, 4));
+		assertEquals(true, ProofManager.remainsValid(stated_, 3, none_,
+				untested_, 4));
+		assertEquals(false, ProofManager.remainsValid(stated_, 3, tested_,
+				none_, 4));
+		assertEquals(false, ProofManager.remainsValid(stated_, 3, none_,
+				tested_, 4));
+	}
+
+	@Test
+	public void testSkippedVersion() {
+		stated_.contains(1);
+		// the changes of the skipped version are not known
+		assertEquals(false, ProofManager.remainsValid(stated_, 3, untested_,
+				none_, 5));
+		assertEquals(false,
+				ProofManager.remainsValid(stated_, 3, none_, none_, 5));
+	}
+
+	@Test
+	public void testOutOfOrderVersion() {
+		stated_.contains(1);
+		// already taken into account when the root was computed
+		assertEquals(true, ProofManager.remainsValid(stated_, 3, tested_,
+				tested_, 3));
+		assertEquals(true, ProofManager.remainsValid(stated_, 3, tested_,
+				none_, 2));
+		assertEquals(true,
+				ProofManager.remainsValid(null, 3, tested_, none_, 1));
+	}
+
+	@Test
+	public void testNotRecorded() {
+		assertEquals(false,
+				ProofManager.remainsValid(null, 3, none_, untested_, 4));
+		// iterated over the stated axioms
+		stated_.iterator();
+		assertEquals(false, ProofManager.remainsValid(stated_, 3, none_,
+				untested_, 4));
+	}
+
+}
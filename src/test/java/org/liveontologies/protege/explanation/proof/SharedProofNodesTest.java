@@ -0,0 +1,187 @@
+package org.liveontologies.protege.explanation.proof;
+
+/*-
+ * #%L
+ * Protege Proof-Based Explanation
+ * $Id:$
+ * $HeadURL:$
+ * %%
+ * Copyright (C) 2014 - 2016 Live Ontologies Project
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Test;
+import org.liveontologies.puli.BaseProof;
+import org.liveontologies.puli.Inference;
+import org.liveontologies.puli.Inferences;
+import org.liveontologies.puli.ProofNode;
+import org.liveontologies.puli.ProofStep;
+import org.liveontologies.puli.pinpointing.InterruptMonitor;
+
+public class SharedProofNodesTest {
+
+	private static final int ROUNDS_ = 500;
+
+	/**
+	 * the maximal number of conclusions of the random proofs; small enough
+	 * to visit every path of the proof nodes
+	 */
+	private static final int CONCLUSIONS_ = 10;
+
+	@Test
+	public void testAgainstDerivability() {
+		Random random = new Random(11);
+		int cyclic = 0;
+		for (int round = 0; round < ROUNDS_; round++) {
+			BaseProof<Inference<Integer>> proof = randomProof(random);
+			ProofNode<Integer> root = SharedProofNodes.create(proof, 0,
+					InterruptMonitor.DUMMY);
+			Set<Integer> nothingBlocked = Collections.emptySet();
+			if (!getDerivable(proof, nothingBlocked).contains(0)) {
+				assertNull(root);
+				continue;
+			}
+			// else
+			assertEquals(Integer.valueOf(0), root.getMember());
+			if (checkNode(proof, root, nothingBlocked,
+					new HashSet<List<Object>>())) {
+				cyclic++;
+			}
+		}
+		// make sure the proofs with cycles were tested
+		assertTrue(cyclic > ROUNDS_ / 10);
+	}
+
+	/**
+	 * Checks that the node has exactly the inferences of its conclusion whose
+	 * premises are derivable without using the conclusions on the path to
+	 * the node, and then checks the premises recursively
+	 * 
+	 * @param proof
+	 * @param node
+	 * @param path
+	 *            the conclusions on the path to the node
+	 * @param checked
+	 *            the conclusions with the paths for which the nodes were
+	 *            already checked
+	 * @return {@code true} if some inference was removed because its premises
+	 *         are derivable only using the conclusions on the path
+	 */
+	private static boolean checkNode(BaseProof<Inference<Integer>> proof,
+			ProofNode<Integer> node, Set<Integer> path,
+			Set<List<Object>> checked) {
+		Integer conclusion = node.getMember();
+		if (!checked.add(Arrays.<Object> asList(conclusion,
+				new TreeSet<Integer>(path)))) {
+			return false;
+		}
+		// else
+		Set<Integer> blocked = new HashSet<Integer>(path);
+		blocked.add(conclusion);
+		Set<Integer> derivable = getDerivable(proof, blocked);
+		Set<Integer> unblockedDerivable = getDerivable(proof,
+				Collections.<Integer> emptySet());
+		boolean cyclic = false;
+		Set<Inference<?>> expected = new HashSet<Inference<?>>();
+		for (Inference<Integer> inf : proof.getInferences(conclusion)) {
+			if (derivable.containsAll(inf.getPremises())) {
+				expected.add(inf);
+			} else if (unblockedDerivable.containsAll(inf.getPremises())) {
+				cyclic = true;
+			}
+		}
+		Set<Inference<?>> actual = new HashSet<Inference<?>>();
+		for (ProofStep<Integer> step : node.getInferences()) {
+			Inference<? extends Integer> inf = step.getInference();
+			actual.add(inf);
+			assertEquals(conclusion, step.getConclusion().getMember());
+			List<Integer> premises = new ArrayList<Integer>();
+			for (ProofNode<Integer> premise : step.getPremises()) {
+				premises.add(premise.getMember());
+			}
+			assertEquals(inf.getPremises(), premises);
+			for (ProofNode<Integer> premise : step.getPremises()) {
+				cyclic |= checkNode(proof, premise, blocked, checked);
+			}
+		}
+		assertEquals(expected, actual);
+		return cyclic;
+	}
+
+	/**
+	 * @param proof
+	 * @param blocked
+	 * @return the conclusions derivable in the given proof without using the
+	 *         blocked conclusions, computed by repeatedly applying all
+	 *         inferences until nothing new is derived
+	 */
+	private static Set<Integer> getDerivable(
+			BaseProof<Inference<Integer>> proof, Set<Integer> blocked) {
+		Set<Integer> result = new HashSet<Integer>();
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int conclusion = 0; conclusion < CONCLUSIONS_; conclusion++) {
+				if (blocked.contains(conclusion)
+						|| result.contains(conclusion)) {
+					continue;
+				}
+				// else
+				for (Inference<Integer> inf : proof
+						.getInferences(conclusion)) {
+					if (result.containsAll(inf.getPremises())) {
+						result.add(conclusion);
+						changed = true;
+						break;
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	private static BaseProof<Inference<Integer>> randomProof(Random random) {
+		BaseProof<Inference<Integer>> result = new BaseProof<Inference<Integer>>();
+		int conclusionCount = 1 + random.nextInt(CONCLUSIONS_);
+		int inferenceCount = random.nextInt(3 * conclusionCount);
+		for (int i = 0; i < inferenceCount; i++) {
+			int conclusion = random.nextInt(conclusionCount);
+			int premiseCount = random.nextInt(4);
+			List<Integer> premises = new ArrayList<Integer>(premiseCount);
+			for (int j = 0; j < premiseCount; j++) {
+				premises.add(random.nextInt(conclusionCount));
+			}
+			result.produce(Inferences.create(
+					premiseCount == 0 && random.nextBoolean() ? "asserted"
+							: "inference",
+					conclusion, premises));
+		}
+		return result;
+	}
+
+}
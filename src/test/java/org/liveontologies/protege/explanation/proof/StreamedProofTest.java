@@ -0,0 +1,190 @@
+package org.liveontologies.protege.explanation.proof;
+
+/*-
+ * #%L
+ * Protege Proof-Based Explanation
+ * $Id:$
+ * $HeadURL:$
+ * %%
+ * Copyright (C) 2014 - 2016 Live Ontologies Project
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.liveontologies.protege.explanation.proof.service.InferenceSubscription;
+import org.liveontologies.puli.DynamicProof;
+import org.liveontologies.puli.Inference;
+import org.liveontologies.puli.Inferences;
+
+public class StreamedProofTest {
+
+	private final StreamedProof<Inference<Integer>> proof_ = new StreamedProof<Inference<Integer>>();
+
+	private final RecordingSubscription subscription_ = new RecordingSubscription();
+
+	private int notifications_ = 0;
+
+	/**
+	 * the number of inferences sent so far
+	 */
+	private int sent_ = 0;
+
+	public StreamedProofTest() {
+		proof_.addListener(new DynamicProof.ChangeListener() {
+			@Override
+			public void inferencesChanged() {
+				notifications_++;
+			}
+		});
+	}
+
+	@Test
+	public void testBatchDoubling() {
+		proof_.onSubscribe(subscription_);
+		assertEquals(Arrays.asList(128L), subscription_.requests_);
+		send(128);
+		assertEquals(1, notifications_);
+		proof_.getInferences(0);
+		assertEquals(Arrays.asList(128L, 256L), subscription_.requests_);
+		send(256);
+		assertEquals(2, notifications_);
+		proof_.getInferences(0);
+		assertEquals(Arrays.asList(128L, 256L, 512L),
+				subscription_.requests_);
+		// all received inferences are available
+		assertEquals(128 + 256, proof_.getInferences(0).size()
+				+ proof_.getInferences(1).size());
+	}
+
+	@Test
+	public void testNoRequestBeforeRetrieval() {
+		proof_.onSubscribe(subscription_);
+		send(100);
+		// the batch is not yet received
+		assertEquals(0, notifications_);
+		proof_.getInferences(0);
+		assertEquals(Arrays.asList(128L), subscription_.requests_);
+		send(28);
+		assertEquals(1, notifications_);
+		// not retrieved yet
+		assertEquals(Arrays.asList(128L), subscription_.requests_);
+		proof_.getInferences(1);
+		proof_.getInferences(0);
+		// requested only once
+		assertEquals(Arrays.asList(128L, 256L), subscription_.requests_);
+	}
+
+	@Test
+	public void testComplete() {
+		proof_.onSubscribe(subscription_);
+		send(128);
+		assertEquals(false, proof_.isComplete());
+		proof_.onComplete();
+		assertEquals(true, proof_.isComplete());
+		assertEquals(2, notifications_);
+		// nothing more to request
+		proof_.getInferences(0);
+		assertEquals(Arrays.asList(128L), subscription_.requests_);
+		assertEquals(0, subscription_.cancellations_);
+	}
+
+	@Test
+	public void testResetAfterComplete() {
+		proof_.onSubscribe(subscription_);
+		send(128);
+		proof_.getInferences(0);
+		proof_.onComplete();
+		proof_.onReset();
+		assertEquals(false, proof_.isComplete());
+		assertEquals(3, notifications_);
+		// the outdated inferences are discarded and requested again
+		assertEquals(Collections.emptyList(), proof_.getInferences(0));
+		assertEquals(Arrays.asList(128L, 256L, 128L),
+				subscription_.requests_);
+		send(1);
+		assertEquals(1, proof_.getInferences(1).size()
+				+ proof_.getInferences(0).size());
+	}
+
+	@Test
+	public void testError() {
+		proof_.onSubscribe(subscription_);
+		send(10);
+		proof_.onError(new RuntimeException("expected in test"));
+		assertEquals(true, proof_.isComplete());
+		assertEquals(1, notifications_);
+		assertEquals(5, proof_.getInferences(0).size());
+	}
+
+	@Test
+	public void testCancelOnDispose() {
+		proof_.onSubscribe(subscription_);
+		send(128);
+		proof_.dispose();
+		assertEquals(1, subscription_.cancellations_);
+		// the next batch is not requested anymore
+		assertEquals(Collections.emptyList(), proof_.getInferences(0));
+		assertEquals(Arrays.asList(128L), subscription_.requests_);
+	}
+
+	@Test
+	public void testDisposeBeforeSubscribe() {
+		proof_.dispose();
+		proof_.onSubscribe(subscription_);
+		assertEquals(1, subscription_.cancellations_);
+		assertEquals(Collections.emptyList(), subscription_.requests_);
+	}
+
+	/**
+	 * Sends the given number of inferences alternating between two
+	 * conclusions
+	 * 
+	 * @param count
+	 */
+	private void send(int count) {
+		for (int i = 0; i < count; i++) {
+			proof_.onInference(Inferences.create("inference", sent_ % 2,
+					Collections.singletonList(sent_ + 2)));
+			sent_++;
+		}
+	}
+
+	private static class RecordingSubscription
+			implements InferenceSubscription {
+
+		final List<Long> requests_ = new ArrayList<Long>();
+
+		int cancellations_ = 0;
+
+		@Override
+		public void request(long n) {
+			requests_.add(n);
+		}
+
+		@Override
+		public void cancel() {
+			cancellations_++;
+		}
+
+	}
+
+}